@@ -0,0 +1,122 @@
+package benchmark;
+
+import main.CompilationContext;
+import main.SophiaCompiler;
+import main.ast.nodes.Program;
+import main.visitor.codeGenerator.CodeGenerator;
+import main.visitor.nameAnalyzer.NameAnalyzer;
+import main.visitor.typeChecker.TypeChecker;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import parsers.SophiaLexer;
+import parsers.SophiaParser;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+//usage: java benchmark.CompilerBenchmarks [--sizes=1,10,100] [--warmup=3] [--iterations=5] [--time=1000] [--json=path] [files...]
+public class CompilerBenchmarks {
+    private final Harness harness;
+    private final ArrayList<Harness.Result> results = new ArrayList<>();
+
+    public CompilerBenchmarks(Harness harness) {
+        this.harness = harness;
+    }
+
+    private static Program parse(String source) {
+        SophiaLexer sophiaLexer = new SophiaLexer(CharStreams.fromString(source));
+        return new SophiaCompiler().parse(new CommonTokenStream(sophiaLexer));
+    }
+
+    private static Program parseFullLL(String source) {
+        SophiaLexer sophiaLexer = new SophiaLexer(CharStreams.fromString(source));
+        SophiaParser sophiaParser = new SophiaParser(new CommonTokenStream(sophiaLexer));
+        return sophiaParser.sophia().sophiaProgram;
+    }
+
+    private static int countTokens(String source) {
+        CommonTokenStream tokenStream = new CommonTokenStream(new SophiaLexer(CharStreams.fromString(source)));
+        tokenStream.fill();
+        return tokenStream.size();
+    }
+
+    private static NameAnalyzer analyze(Program program, CompilationContext context) {
+        NameAnalyzer nameAnalyzer = new NameAnalyzer(program, context);
+        nameAnalyzer.analyze();
+        return nameAnalyzer;
+    }
+
+    public void runAll(String size, String source) throws Exception {
+        int tokens = countTokens(source);
+        results.add(harness.run("parse", size, "tokens", tokens, () -> parse(source)));
+        results.add(harness.run("parseFullLL", size, "tokens", tokens, () -> parseFullLL(source)));
+
+        Program program = parse(source);
+        int classes = program.getClasses().size();
+        results.add(harness.run("nameAnalysis", size, "classes", classes, () -> analyze(program, new CompilationContext())));
+
+        CompilationContext context = new CompilationContext();
+        NameAnalyzer nameAnalyzer = analyze(program, context);
+        results.add(harness.run("typeCheck", size, "classes", classes, () -> {
+            TypeChecker typeChecker = new TypeChecker(context, nameAnalyzer.getClassHierarchy());
+            program.accept(typeChecker);
+            return typeChecker;
+        }));
+
+        results.add(harness.run("codeGeneration", size, "classes", classes, () -> {
+            CodeGenerator codeGenerator = new CodeGenerator(context, nameAnalyzer.getClassHierarchy());
+            program.accept(codeGenerator);
+            return codeGenerator;
+        }));
+
+        for (int i = results.size() - 5; i < results.size(); i++)
+            System.out.println(results.get(i));
+    }
+
+    public void writeJson(String path) throws IOException {
+        try (FileWriter writer = new FileWriter(path)) {
+            writer.write("[\n");
+            for (int i = 0; i < results.size(); i++)
+                writer.write("  " + results.get(i).toJson() + (i + 1 < results.size() ? ",\n" : "\n"));
+            writer.write("]\n");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] sizes = {"1", "10", "100"};
+        int warmup = 3, iterations = 5;
+        long time = 1000;
+        String jsonPath = null;
+        ArrayList<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--sizes="))
+                sizes = arg.substring("--sizes=".length()).split(",");
+            else if (arg.startsWith("--warmup="))
+                warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            else if (arg.startsWith("--iterations="))
+                iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            else if (arg.startsWith("--time="))
+                time = Long.parseLong(arg.substring("--time=".length()));
+            else if (arg.startsWith("--json="))
+                jsonPath = arg.substring("--json=".length());
+            else
+                files.add(arg);
+        }
+
+        CompilerBenchmarks benchmarks = new CompilerBenchmarks(new Harness(warmup, iterations, time));
+        System.out.println(Harness.HEADER);
+        if (files.isEmpty()) {
+            for (String size : sizes)
+                benchmarks.runAll(size, new ProgramGenerator().setClasses(Integer.parseInt(size)).setDepth(4).generate());
+        }
+        else {
+            for (String file : files)
+                benchmarks.runAll(Paths.get(file).getFileName().toString(), new String(Files.readAllBytes(Paths.get(file))));
+        }
+        if (jsonPath != null)
+            benchmarks.writeJson(jsonPath);
+    }
+}
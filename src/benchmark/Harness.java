@@ -0,0 +1,103 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+public class Harness {
+    public interface Operation {
+        Object run() throws Exception;
+    }
+
+    public static class Result {
+        private final String name;
+        private final String size;
+        private final String unit;
+        private final double unitsPerSecond;
+        private final double error;
+        private final double nanosPerOp;
+        private final long bytesPerOp;
+
+        Result(String name, String size, String unit, double unitsPerSecond, double error, double nanosPerOp, long bytesPerOp) {
+            this.name = name;
+            this.size = size;
+            this.unit = unit;
+            this.unitsPerSecond = unitsPerSecond;
+            this.error = error;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        public String toString() {
+            return String.format("%-28s %10s %14.1f +- %10.1f %-12s %12.3f %16d",
+                    name, size, unitsPerSecond, error, unit + "/s", nanosPerOp / 1e6, bytesPerOp);
+        }
+
+        public String toJson() {
+            return "{\"benchmark\":\"" + name + "\",\"size\":\"" + size + "\",\"unit\":\"" + unit + "/s\"," +
+                    "\"score\":" + unitsPerSecond + ",\"error\":" + error + "," +
+                    "\"msPerOp\":" + (nanosPerOp / 1e6) + ",\"bytesPerOp\":" + bytesPerOp + "}";
+        }
+    }
+
+    public static final String HEADER = String.format("%-28s %10s %27s %-12s %12s %16s",
+            "Benchmark", "size", "score", "units", "ms/op", "alloc bytes/op");
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final ThreadMXBean threadMXBean;
+    private volatile Object sink;
+
+    public Harness(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.threadMXBean = ManagementFactory.getThreadMXBean();
+    }
+
+    private long allocatedBytes() {
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+
+    //one iteration keeps calling the operation until iterationNanos passed; returns {ops, nanos, bytes}
+    private long[] iteration(Operation operation) throws Exception {
+        long ops = 0;
+        long allocatedStart = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink = operation.run();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return new long[]{ops, elapsed, allocatedBytes() - allocatedStart};
+    }
+
+    public Result run(String name, String size, String unit, long unitsPerOp, Operation operation) throws Exception {
+        for (int i = 0; i < warmupIterations; i++)
+            iteration(operation);
+
+        double[] scores = new double[measurementIterations];
+        long totalOps = 0, totalNanos = 0, totalBytes = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+            long[] measured = iteration(operation);
+            scores[i] = unitsPerOp * measured[0] / (measured[1] / 1e9);
+            totalOps += measured[0];
+            totalNanos += measured[1];
+            totalBytes += measured[2];
+        }
+
+        double mean = 0;
+        for (double score : scores)
+            mean += score;
+        mean /= scores.length;
+        double variance = 0;
+        for (double score : scores)
+            variance += (score - mean) * (score - mean);
+        double error = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+
+        return new Result(name, size, unit, mean, error, (double) totalNanos / totalOps, totalBytes / totalOps);
+    }
+}
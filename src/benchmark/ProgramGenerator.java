@@ -0,0 +1,375 @@
+package benchmark;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+//usage: java benchmark.ProgramGenerator [--classes=10] [--depth=1] [--fields=2] [--methods=2] [--statements=10]
+//                                       [--exprDepth=3] [--listSize=8] [--seed=1] [--lines=N] [--out=prefix]
+//writes prefix.sop and prefix-ans.txt (or the program to stdout when --out is missing)
+public class ProgramGenerator {
+    public static final String EXPECTED_OUTPUT = "Compilation successful";
+    //size of the int lists nested in each class's list of lists
+    private static final int INNER_SIZE = 2;
+
+    private int classes = 10;
+    private int depth = 1;
+    private int fields = 2;
+    private int methods = 2;
+    private int statements = 10;
+    private int exprDepth = 3;
+    private int listSize = 8;
+    private int lines = 0;
+    private Random random = new Random(1);
+
+    private StringBuilder out;
+    private int lineCount;
+    private int generatedClasses;
+    private ArrayList<Integer> chainLeaves;
+
+    public ProgramGenerator setClasses(int classes) {
+        this.classes = classes;
+        return this;
+    }
+
+    public ProgramGenerator setDepth(int depth) {
+        this.depth = Math.max(1, depth);
+        return this;
+    }
+
+    public ProgramGenerator setFields(int fields) {
+        this.fields = fields;
+        return this;
+    }
+
+    public ProgramGenerator setMethods(int methods) {
+        this.methods = methods;
+        return this;
+    }
+
+    public ProgramGenerator setStatements(int statements) {
+        this.statements = statements;
+        return this;
+    }
+
+    public ProgramGenerator setExprDepth(int exprDepth) {
+        this.exprDepth = exprDepth;
+        return this;
+    }
+
+    public ProgramGenerator setListSize(int listSize) {
+        this.listSize = Math.max(1, listSize);
+        return this;
+    }
+
+    //when positive, classes are added until the program has at least this many lines
+    public ProgramGenerator setLines(int lines) {
+        this.lines = lines;
+        return this;
+    }
+
+    public ProgramGenerator setSeed(long seed) {
+        this.random = new Random(seed);
+        return this;
+    }
+
+    private void line(int indent, String text) {
+        for (int i = 0; i < indent; i++)
+            out.append("  ");
+        out.append(text).append('\n');
+        lineCount++;
+    }
+
+    private boolean hasParent(int classIndex) {
+        return classIndex % depth != 0;
+    }
+
+    private String className(int classIndex) {
+        return "C" + classIndex;
+    }
+
+    private String intField(int classIndex, int fieldIndex) {
+        return "this.f" + classIndex + "_" + fieldIndex;
+    }
+
+    private boolean isIntField(int fieldIndex) {
+        return fieldIndex % 2 == 0;
+    }
+
+    private String index() {
+        return "[" + random.nextInt(listSize) + "]";
+    }
+
+    private String innerIndex() {
+        return "[" + random.nextInt(INNER_SIZE) + "]";
+    }
+
+    private String innerListType() {
+        return "list(" + INNER_SIZE + " # int)";
+    }
+
+    private String nestedListType() {
+        return "list(" + listSize + " # " + innerListType() + ")";
+    }
+
+    private String intLeaf(int classIndex) {
+        switch (random.nextInt(8)) {
+            case 0:
+                return Integer.toString(random.nextInt(100));
+            case 1:
+                return "x";
+            case 2:
+                return "y";
+            case 3:
+                return "a";
+            case 4:
+                return fields > 0 ? intField(classIndex, 0) : "b";
+            case 5:
+                return "this.l" + classIndex + index();
+            case 6:
+                return "this.n" + classIndex + index() + innerIndex();
+            default:
+                return "this.r" + classIndex + ".count";
+        }
+    }
+
+    private String intExpression(int classIndex, int nesting) {
+        if (nesting == 0)
+            return intLeaf(classIndex);
+        String inner = intExpression(classIndex, nesting - 1);
+        String leaf = intLeaf(classIndex);
+        switch (random.nextInt(4)) {
+            case 0:
+                return "(" + inner + " + " + leaf + ")";
+            case 1:
+                return "(" + leaf + " - " + inner + ")";
+            case 2:
+                return "(" + inner + " * " + leaf + ")";
+            default:
+                return "(" + inner + " % " + (random.nextInt(9) + 2) + ")";
+        }
+    }
+
+    private String boolExpression(int classIndex) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return intExpression(classIndex, exprDepth) + " < " + intLeaf(classIndex);
+            case 1:
+                return "x == y || " + intLeaf(classIndex) + " > " + random.nextInt(50);
+            case 2:
+                return "this.b" + classIndex + index() + " || " + intLeaf(classIndex) + " < 0";
+            default:
+                return "flag && " + intExpression(classIndex, exprDepth) + " > 0";
+        }
+    }
+
+    private String callExpression(int classIndex, int methodIndex) {
+        if (methodIndex > 0)
+            return "this.m" + classIndex + "_" + (methodIndex - 1) + "(x, y)";
+        if (hasParent(classIndex) && methods > 0)
+            return "this.m" + (classIndex - 1) + "_" + (methods - 1) + "(x, y)";
+        return null;
+    }
+
+    private void statement(int indent, int classIndex, int methodIndex, boolean[] calledOut) {
+        switch (random.nextInt(14)) {
+            case 0:
+                line(indent, "if (" + boolExpression(classIndex) + ") {");
+                line(indent + 1, "x = " + intExpression(classIndex, exprDepth) + ";");
+                line(indent, "} else {");
+                line(indent + 1, "y = " + intExpression(classIndex, exprDepth) + ";");
+                line(indent, "}");
+                break;
+            case 1:
+                line(indent, "for (i = 0; i < " + listSize + "; i = i + 1) {");
+                line(indent + 1, "this.l" + classIndex + "[i] = " + intExpression(classIndex, exprDepth) + ";");
+                line(indent, "}");
+                break;
+            case 2:
+                line(indent, "foreach (e in this.l" + classIndex + ") {");
+                line(indent + 1, "x = x + e;");
+                line(indent, "}");
+                break;
+            case 3:
+                String call = callExpression(classIndex, methodIndex);
+                if (call != null && !calledOut[0]) {
+                    //at most one call per method keeps the generated program's run time linear
+                    calledOut[0] = true;
+                    line(indent, "x = " + call + ";");
+                }
+                else
+                    line(indent, "flag = " + boolExpression(classIndex) + ";");
+                break;
+            case 4:
+                line(indent, "flag = " + boolExpression(classIndex) + ";");
+                break;
+            case 5:
+                line(indent, "this.r" + classIndex + ".count = this.r" + classIndex + ".count + 1;");
+                break;
+            case 6:
+                if (fields > 0)
+                    line(indent, intField(classIndex, 0) + " = " + intExpression(classIndex, exprDepth) + ";");
+                else
+                    line(indent, "y = " + intExpression(classIndex, exprDepth) + ";");
+                break;
+            case 7:
+                line(indent, "y = " + intExpression(classIndex, exprDepth) + ";");
+                break;
+            case 8:
+                line(indent, "this.b" + classIndex + index() + " = " + boolExpression(classIndex) + ";");
+                break;
+            case 9:
+                line(indent, "this.s" + classIndex + index() + " = \"s" + random.nextInt(100) + "\";");
+                line(indent, "t = this.s" + classIndex + index() + ";");
+                break;
+            case 10:
+                line(indent, "this.n" + classIndex + index() + innerIndex() + " = " + intExpression(classIndex, exprDepth) + ";");
+                break;
+            case 11:
+                //a copy written afterwards, the class's list keeps its elements
+                line(indent, "n = this.n" + classIndex + ";");
+                line(indent, "n" + index() + innerIndex() + " = " + intExpression(classIndex, exprDepth) + ";");
+                break;
+            case 12:
+                line(indent, "foreach (v in this.n" + classIndex + ") {");
+                line(indent + 1, "x = x + v" + innerIndex() + ";");
+                line(indent, "}");
+                break;
+            default:
+                line(indent, "x = " + intExpression(classIndex, exprDepth) + ";");
+        }
+    }
+
+    private void method(int classIndex, int methodIndex) {
+        line(1, "def int m" + classIndex + "_" + methodIndex + "(a: int, b: int) {");
+        line(2, "x: int;");
+        line(2, "y: int;");
+        line(2, "i: int;");
+        line(2, "e: int;");
+        line(2, "flag: bool;");
+        line(2, "t: string;");
+        line(2, "n: " + nestedListType() + ";");
+        line(2, "v: " + innerListType() + ";");
+        line(2, "x = a;");
+        line(2, "y = b;");
+        boolean[] called = {false};
+        for (int s = 0; s < statements; s++)
+            statement(2, classIndex, methodIndex, called);
+        line(2, "return " + intExpression(classIndex, exprDepth) + ";");
+        line(1, "}");
+    }
+
+    private void sophiaClass(int classIndex) {
+        if (hasParent(classIndex))
+            line(0, "class " + className(classIndex) + " extends " + className(classIndex - 1) + " {");
+        else
+            line(0, "class " + className(classIndex) + " {");
+        for (int f = 0; f < fields; f++)
+            line(1, "f" + classIndex + "_" + f + ": " + (isIntField(f) ? "int" : "bool") + ";");
+        line(1, "l" + classIndex + ": list(" + listSize + " # int);");
+        line(1, "b" + classIndex + ": list(" + listSize + " # bool);");
+        line(1, "s" + classIndex + ": list(" + listSize + " # string);");
+        line(1, "n" + classIndex + ": " + nestedListType() + ";");
+        line(1, "r" + classIndex + ": list(name: string, count: int);");
+        for (int m = 0; m < methods; m++)
+            method(classIndex, m);
+        line(0, "}");
+        line(0, "");
+    }
+
+    private void mainClass() {
+        line(0, "class Main {");
+        for (int c = 0; c < chainLeaves.size(); c++) {
+            int leaf = chainLeaves.get(c);
+            line(1, "def int run" + c + "() {");
+            line(2, "o: " + className(leaf) + ";");
+            line(2, "s: int;");
+            line(2, "o = new " + className(leaf) + "();");
+            line(2, "s = 0;");
+            for (int classIndex = leaf; classIndex >= 0; classIndex--) {
+                for (int m = 0; m < methods; m++)
+                    line(2, "s = s + o.m" + classIndex + "_" + m + "(" + classIndex + ", " + m + ");");
+                if (!hasParent(classIndex))
+                    break;
+            }
+            line(2, "return s;");
+            line(1, "}");
+        }
+        line(1, "def Main() {");
+        line(2, "s: int;");
+        line(2, "s = 0;");
+        for (int c = 0; c < chainLeaves.size(); c++)
+            line(2, "s = s + this.run" + c + "();");
+        line(2, "print(s);");
+        line(1, "}");
+        line(0, "}");
+    }
+
+    public String generate() {
+        out = new StringBuilder();
+        lineCount = 0;
+        generatedClasses = 0;
+        chainLeaves = new ArrayList<>();
+        while (lines > 0 ? lineCount < lines : generatedClasses < classes) {
+            sophiaClass(generatedClasses);
+            if (hasParent(generatedClasses))
+                chainLeaves.set(chainLeaves.size() - 1, generatedClasses);
+            else
+                chainLeaves.add(generatedClasses);
+            generatedClasses++;
+        }
+        mainClass();
+        return out.toString();
+    }
+
+    public int getGeneratedClasses() {
+        return generatedClasses;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public static void main(String[] args) throws IOException {
+        ProgramGenerator generator = new ProgramGenerator();
+        String outPrefix = null;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--classes="))
+                generator.setClasses(Integer.parseInt(value));
+            else if (arg.startsWith("--depth="))
+                generator.setDepth(Integer.parseInt(value));
+            else if (arg.startsWith("--fields="))
+                generator.setFields(Integer.parseInt(value));
+            else if (arg.startsWith("--methods="))
+                generator.setMethods(Integer.parseInt(value));
+            else if (arg.startsWith("--statements="))
+                generator.setStatements(Integer.parseInt(value));
+            else if (arg.startsWith("--exprDepth="))
+                generator.setExprDepth(Integer.parseInt(value));
+            else if (arg.startsWith("--listSize="))
+                generator.setListSize(Integer.parseInt(value));
+            else if (arg.startsWith("--seed="))
+                generator.setSeed(Long.parseLong(value));
+            else if (arg.startsWith("--lines="))
+                generator.setLines(Integer.parseInt(value));
+            else if (arg.startsWith("--out="))
+                outPrefix = value;
+        }
+
+        String program = generator.generate();
+        if (outPrefix == null) {
+            System.out.print(program);
+            return;
+        }
+        try (FileWriter writer = new FileWriter(outPrefix + ".sop")) {
+            writer.write(program);
+        }
+        try (FileWriter writer = new FileWriter(outPrefix + "-ans.txt")) {
+            writer.write(EXPECTED_OUTPUT + "\n");
+        }
+        System.err.println("Generated " + generator.getGeneratedClasses() + " classes, "
+                + generator.getLineCount() + " lines in " + outPrefix + ".sop");
+    }
+}
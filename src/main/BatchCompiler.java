@@ -0,0 +1,112 @@
+package main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//Compiles many files on a fixed pool of workers. Every file gets its own SophiaCompiler
+//(and so its own CompilationContext); its output is buffered and printed in input order.
+public class BatchCompiler {
+    public static final String FILE_PREFIX = "== ";
+
+    private static class FileResult {
+        private final String path;
+        private final int status;
+        private final byte[] output;
+        private final boolean parseFallbackUsed;
+
+        FileResult(String path, int status, byte[] output, boolean parseFallbackUsed) {
+            this.path = path;
+            this.status = status;
+            this.output = output;
+            this.parseFallbackUsed = parseFallbackUsed;
+        }
+    }
+
+    private final int threads;
+
+    public BatchCompiler(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    //directories are searched recursively for .sop files, sorted so the order is reproducible
+    public static List<String> collectInputs(List<String> paths) throws IOException {
+        List<String> inputs = new ArrayList<>();
+        for (String path : paths) {
+            Path file = Paths.get(path);
+            if (!Files.isDirectory(file)) {
+                inputs.add(path);
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(file)) {
+                inputs.addAll(walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".sop"))
+                        .map(Path::toString)
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+        return inputs;
+    }
+
+    private static FileResult compileFile(String path) throws UnsupportedEncodingException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, true, "UTF-8");
+        SophiaCompiler sophiaCompiler = new SophiaCompiler();
+        sophiaCompiler.setOutput(out, out);
+        int status = sophiaCompiler.compileFile(path);
+        out.flush();
+        return new FileResult(path, status, buffer.toByteArray(), sophiaCompiler.isParseFallbackUsed());
+    }
+
+    //returns the highest exit status of all files
+    public int compileAll(List<String> inputs, PrintStream out, PrintStream err) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, inputs.size())));
+        List<Future<FileResult>> futures = new ArrayList<>();
+        for (String input : inputs)
+            futures.add(pool.submit(() -> compileFile(input)));
+
+        int status = SophiaCompiler.SUCCESS;
+        int failed = 0;
+        int parseFallbacks = 0;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                FileResult result;
+                try {
+                    result = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    byte[] message = ("Internal compiler error: " + e.getCause() + "\n").getBytes(StandardCharsets.UTF_8);
+                    result = new FileResult(inputs.get(i), SophiaCompiler.INTERNAL_ERROR, message, false);
+                }
+                out.println(FILE_PREFIX + result.path);
+                out.write(result.output, 0, result.output.length);
+                if (result.status != SophiaCompiler.SUCCESS)
+                    failed++;
+                if (result.parseFallbackUsed)
+                    parseFallbacks++;
+                status = Math.max(status, result.status);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = SophiaCompiler.INTERNAL_ERROR;
+        } finally {
+            pool.shutdownNow();
+        }
+        out.flush();
+        err.println("Compiled " + inputs.size() + " files: " + (inputs.size() - failed) + " successful, "
+                + failed + " failed, " + parseFallbacks + " parse fallbacks");
+        return status;
+    }
+}
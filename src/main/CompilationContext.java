@@ -0,0 +1,80 @@
+package main;
+
+import main.ast.nodes.Node;
+import main.ast.types.ExpressionTypeTable;
+import main.ast.types.TypeFactory;
+import main.compileErrorException.CompileErrorException;
+import main.symbolTable.ClassMemberTable;
+import main.symbolTable.SymbolTable;
+import main.symbolTable.items.ClassSymbolTableItem;
+import main.symbolTable.items.SymbolTableItem;
+import main.symbolTable.utils.stack.Stack;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//state owned by a single compilation, so several compilations can share a jvm
+public class CompilationContext {
+    private SymbolTable top;
+    private SymbolTable root;
+    private Stack<SymbolTable> stack = new Stack<>();
+    private boolean catchErrorsActive = true;
+    private Map<String, ClassMemberTable> classTables = new HashMap<>();
+    private TypeFactory typeFactory = new TypeFactory();
+    private ExpressionTypeTable expressionTypes = new ExpressionTypeTable();
+
+    public void push(SymbolTable symbolTable) {
+        if (top != null)
+            stack.push(top);
+        top = symbolTable;
+    }
+
+    public void pop() {
+        top = stack.pop();
+    }
+
+    public SymbolTable getTop() {
+        return top;
+    }
+
+    public SymbolTable getRoot() {
+        return root;
+    }
+
+    public void setRoot(SymbolTable root) {
+        this.root = root;
+    }
+
+    //called once the class hierarchy is linked and no more members are added
+    public void buildClassTables() {
+        classTables = new HashMap<>();
+        for (SymbolTableItem item : root.getItems())
+            if (item instanceof ClassSymbolTableItem)
+                classTables.put(item.getName().intern(), new ClassMemberTable((ClassSymbolTableItem) item));
+    }
+
+    public ClassMemberTable getClassTable(String className) {
+        return classTables.get(className);
+    }
+
+    public TypeFactory getTypeFactory() {
+        return typeFactory;
+    }
+
+    public ExpressionTypeTable getExpressionTypes() {
+        return expressionTypes;
+    }
+
+    public boolean isCatchErrorsActive() {
+        return catchErrorsActive;
+    }
+
+    public void setCatchErrorsActive(boolean catchErrorsActive) {
+        this.catchErrorsActive = catchErrorsActive;
+    }
+
+    public void addError(Node node, CompileErrorException e) {
+        if (catchErrorsActive)
+            node.addError(e);
+    }
+}
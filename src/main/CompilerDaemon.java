@@ -0,0 +1,107 @@
+package main;
+
+import main.stats.CompileStats;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+//Keeps one JVM (and the parser's shared ATN/DFA caches) alive across compilations.
+//Protocol, one request per line: a path to a .sop file. The reply is everything the
+//compiler printed for that file followed by a line "#status <exit code>".
+//"quit" ends the session; over a socket "shutdown" also stops the daemon.
+//Code generation and stats options apply to every file compiled.
+public class CompilerDaemon {
+    public static final String STATUS_PREFIX = "#status ";
+    //stack of the thread each request is compiled on
+    public static final long STACK_SIZE = 64L << 20;
+
+    private boolean running = true;
+    private String outputPath;
+    private boolean classFiles;
+    private boolean unboxed;
+    private String statsPath;
+
+    //without an output path only the checks run
+    public void setCodeGeneration(String outputPath, boolean classFiles, boolean unboxed) {
+        this.outputPath = outputPath;
+        this.classFiles = classFiles;
+        this.unboxed = unboxed;
+    }
+
+    public void setStatsPath(String statsPath) {
+        this.statsPath = statsPath;
+    }
+
+    //a request runs on a thread of its own, so the nesting a program may have does not depend on the
+    //thread serving the session and a request that brings its thread down still gets a reply
+    public int compileFile(String path, PrintStream out) {
+        int[] status = {SophiaCompiler.INTERNAL_ERROR};
+        Thread compilation = new Thread(null, () -> status[0] = compile(path, out), "sophia-compile", STACK_SIZE);
+        compilation.start();
+        try {
+            compilation.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return status[0];
+    }
+
+    private int compile(String path, PrintStream out) {
+        SophiaCompiler sophiaCompiler = new SophiaCompiler();
+        sophiaCompiler.setOutput(out, out);
+        if (statsPath != null)
+            sophiaCompiler.setStats(new CompileStats(path), statsPath);
+        if (outputPath != null) {
+            sophiaCompiler.setCodeGeneration(outputPath, classFiles);
+            sophiaCompiler.setUnboxed(unboxed);
+        }
+        return sophiaCompiler.compileFile(path);
+    }
+
+    private void serve(InputStream input, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        PrintStream writer = new PrintStream(output, false, "UTF-8");
+        String request;
+        while ((request = reader.readLine()) != null) {
+            request = request.trim();
+            if (request.isEmpty())
+                continue;
+            if (request.equals("quit"))
+                break;
+            if (request.equals("shutdown")) {
+                running = false;
+                break;
+            }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            int status = compileFile(request, new PrintStream(buffer, true, "UTF-8"));
+            writer.write(buffer.toByteArray());
+            writer.println(STATUS_PREFIX + status);
+            writer.flush();
+        }
+        writer.flush();
+    }
+
+    public void serveStdin() throws IOException {
+        serve(System.in, System.out);
+    }
+
+    public void serveSocket(int port) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.err.println("Sophia daemon listening on " + serverSocket.getLocalSocketAddress());
+            while (running) {
+                try (Socket socket = serverSocket.accept()) {
+                    serve(socket.getInputStream(), socket.getOutputStream());
+                }
+            }
+        }
+    }
+}
@@ -1,14 +1,84 @@
 package main;
 
-import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CharStreams;
+import main.stats.CompileStats;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Sophia {
     public static void main(String[] args) throws IOException {
-        CharStream reader = CharStreams.fromFileName(args[0]);
+        List<String> inputPaths = new ArrayList<>();
+        String statsPath = null;
+        String daemon = null;
+        String emit = null;
+        String outputPath = null;
+        boolean unboxed = false;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            if (arg.equals("--stats"))
+                statsPath = "stats.json";
+            else if (arg.startsWith("--stats="))
+                statsPath = arg.substring("--stats=".length());
+            else if (arg.equals("--daemon"))
+                daemon = "";
+            else if (arg.startsWith("--daemon="))
+                daemon = arg.substring("--daemon=".length());
+            else if (arg.startsWith("--emit="))
+                emit = arg.substring("--emit=".length());
+            else if (arg.startsWith("--output="))
+                outputPath = arg.substring("--output=".length());
+            else if (arg.equals("--unboxed"))
+                unboxed = true;
+            else if (arg.startsWith("--jobs="))
+                jobs = Integer.parseInt(arg.substring("--jobs=".length()));
+            else
+                inputPaths.add(arg);
+        }
+
+        if (emit != null && !emit.equals("jasmin") && !emit.equals("class")) {
+            System.err.println("Unknown --emit format " + emit + ", expected jasmin or class");
+            System.exit(SophiaCompiler.INTERNAL_ERROR);
+        }
+        if (emit != null && outputPath == null)
+            outputPath = "output/";
+
+        if (daemon != null) {
+            CompilerDaemon compilerDaemon = new CompilerDaemon();
+            compilerDaemon.setStatsPath(statsPath);
+            if (emit != null)
+                compilerDaemon.setCodeGeneration(outputPath, emit.equals("class"), unboxed);
+            if (daemon.isEmpty())
+                compilerDaemon.serveStdin();
+            else
+                compilerDaemon.serveSocket(Integer.parseInt(daemon));
+            return;
+        }
+
+        if (inputPaths.size() != 1 || new File(inputPaths.get(0)).isDirectory()) {
+            //every program would be written to the same output folder and stats file
+            if (emit != null || outputPath != null || unboxed || statsPath != null) {
+                System.err.println("--emit, --output, --unboxed and --stats need a single input file");
+                System.exit(SophiaCompiler.INTERNAL_ERROR);
+            }
+            BatchCompiler batchCompiler = new BatchCompiler(jobs);
+            int status = batchCompiler.compileAll(BatchCompiler.collectInputs(inputPaths), System.out, System.err);
+            if (status != SophiaCompiler.SUCCESS)
+                System.exit(status);
+            return;
+        }
+
+        String inputPath = inputPaths.get(0);
         SophiaCompiler sophiaCompiler = new SophiaCompiler();
-        sophiaCompiler.compile(reader);
+        if (statsPath != null)
+            sophiaCompiler.setStats(new CompileStats(inputPath), statsPath);
+        if (emit != null) {
+            sophiaCompiler.setCodeGeneration(outputPath, emit.equals("class"));
+            sophiaCompiler.setUnboxed(unboxed);
+        }
+        int status = sophiaCompiler.compileFile(inputPath);
+        if (status != SophiaCompiler.SUCCESS)
+            System.exit(status);
     }
 }
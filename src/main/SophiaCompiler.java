@@ -2,36 +2,198 @@ package main;
 
 import main.ast.nodes.Program;
 import main.ast.nodes.expression.operators.BinaryOperator;
+import main.stats.CompileStats;
+import main.visitor.codeGenerator.CodeGenerator;
 import main.visitor.nameAnalyzer.NameAnalyzer;
+import main.visitor.optimizer.ConstantFolder;
+import main.visitor.optimizer.DeadCodeEliminator;
 import main.visitor.typeChecker.TypeChecker;
 import main.visitor.utils.ErrorReporter;
+import main.visitor.utils.NodeCounter;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import parsers.SophiaLexer;
 import parsers.SophiaParser;
 
+import java.io.IOException;
+import java.io.PrintStream;
+
 
 public class SophiaCompiler {
-    public void compile(CharStream textStream) {
+    public static final int SUCCESS = 0;
+    public static final int COMPILE_ERROR = 1;
+    public static final int INTERNAL_ERROR = 2;
+
+    private PrintStream out = System.out;
+    private PrintStream err = System.err;
+    private CompileStats stats;
+    private String statsPath;
+    private boolean parseFallbackUsed;
+    private String outputPath;
+    private boolean classFiles;
+    private boolean unboxed;
+
+    public void setOutput(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public void setStats(CompileStats stats, String statsPath) {
+        this.stats = stats;
+        this.statsPath = statsPath;
+    }
+
+    //without an output path only the checks run
+    public void setCodeGeneration(String outputPath, boolean classFiles) {
+        this.outputPath = outputPath;
+        this.classFiles = classFiles;
+    }
+
+    public void setUnboxed(boolean unboxed) {
+        this.unboxed = unboxed;
+    }
+
+    private void startPhase(String name) {
+        if (stats != null)
+            stats.startPhase(name);
+    }
+
+    private void reportStats(Program program) {
+        if (stats == null)
+            return;
+        stats.endPhase();
+        if (program != null) {
+            NodeCounter nodeCounter = new NodeCounter();
+            program.accept(nodeCounter);
+            stats.setNodeCounts(nodeCounter.getCounts());
+        }
+        stats.printTable(err);
+        stats.writeJson(statsPath);
+    }
+
+    //syntax and token errors go to err in antlr's console format, so they stay with the file being compiled
+    private BaseErrorListener errorListener() {
+        return new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                err.println("line " + line + ":" + charPositionInLine + " " + msg);
+            }
+        };
+    }
+
+    //SLL prediction with bail-out first; only inputs it rejects are parsed again in full LL with error recovery
+    public Program parse(CommonTokenStream tokenStream) {
+        SophiaParser sophiaParser = new SophiaParser(tokenStream);
+        sophiaParser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        sophiaParser.removeErrorListeners();
+        sophiaParser.setErrorHandler(new BailErrorStrategy());
+        parseFallbackUsed = false;
+        try {
+            return sophiaParser.sophia().sophiaProgram;
+        } catch (ParseCancellationException e) {
+            parseFallbackUsed = true;
+            tokenStream.seek(0);
+            sophiaParser.reset();
+            sophiaParser.addErrorListener(errorListener());
+            sophiaParser.setErrorHandler(new DefaultErrorStrategy());
+            sophiaParser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return sophiaParser.sophia().sophiaProgram;
+        }
+    }
+
+    public boolean isParseFallbackUsed() {
+        return parseFallbackUsed;
+    }
+
+    //unreadable files and compiler crashes are reported on out instead of escaping
+    public int compileFile(String path) {
+        try {
+            return compile(CharStreams.fromFileName(path));
+        } catch (IOException e) {
+            out.println("Cannot read " + path + ": " + e.getMessage());
+            return INTERNAL_ERROR;
+        } catch (RuntimeException e) {
+            out.println("Internal compiler error: " + e);
+            return INTERNAL_ERROR;
+        } catch (StackOverflowError e) {
+            //the parser and the visitors recurse once per nesting level of the program
+            out.println("Program is nested too deeply to compile");
+            return INTERNAL_ERROR;
+        }
+    }
+
+    public int compile(CharStream textStream) {
+        CompilationContext context = new CompilationContext();
+        startPhase("lexing");
         SophiaLexer sophiaLexer = new SophiaLexer(textStream);
+        sophiaLexer.removeErrorListeners();
+        sophiaLexer.addErrorListener(errorListener());
         CommonTokenStream tokenStream = new CommonTokenStream(sophiaLexer);
-        SophiaParser sophiaParser = new SophiaParser(tokenStream);
-        Program program = sophiaParser.sophia().sophiaProgram;
-        ErrorReporter errorReporter = new ErrorReporter();
+        if (stats != null) {
+            tokenStream.fill();
+            stats.setTokens(tokenStream.size());
+        }
+        startPhase("parsing");
+        Program program = parse(tokenStream);
+        if (stats != null)
+            stats.setParseFallbacks(parseFallbackUsed ? 1 : 0);
+        ErrorReporter errorReporter = new ErrorReporter(out);
 
-        NameAnalyzer nameAnalyzer = new NameAnalyzer(program);
+        startPhase("nameAnalysis");
+        NameAnalyzer nameAnalyzer = new NameAnalyzer(program, context);
         nameAnalyzer.analyze();
+        startPhase("nameErrorReport");
         int numberOfErrors = program.accept(errorReporter);
-        if(numberOfErrors > 0)
-            System.exit(1);
+        if(numberOfErrors > 0) {
+            reportStats(program);
+            return COMPILE_ERROR;
+        }
 
-        TypeChecker typeChecker = new TypeChecker(nameAnalyzer.getClassHierarchy());
+        startPhase("typeChecking");
+        TypeChecker typeChecker = new TypeChecker(context, nameAnalyzer.getClassHierarchy());
 
         program.accept(typeChecker);
+        startPhase("typeErrorReport");
         numberOfErrors = program.accept(errorReporter);
-        if(numberOfErrors > 0)
-            System.exit(1);
+        if(numberOfErrors > 0) {
+            reportStats(program);
+            return COMPILE_ERROR;
+        }
+
+        if (outputPath != null) {
+            startPhase("optimization");
+            program.accept(new ConstantFolder(context));
+            program.accept(new DeadCodeEliminator());
+            startPhase("codeGeneration");
+            try {
+                CodeGenerator codeGenerator = new CodeGenerator(context, nameAnalyzer.getClassHierarchy(), outputPath, classFiles);
+                codeGenerator.setUnboxed(unboxed);
+                program.accept(codeGenerator);
+                if (codeGenerator.getWriteError() != null)
+                    throw codeGenerator.getWriteError();
+            } catch (IOException e) {
+                reportStats(program);
+                out.println("Cannot write " + outputPath + ": " + e.getMessage());
+                return INTERNAL_ERROR;
+            } catch (IllegalStateException e) {
+                //instructions the frame analysis or the class file writer cannot handle
+                reportStats(program);
+                out.println("Code generation failed: " + e.getMessage());
+                return INTERNAL_ERROR;
+            }
+        }
 
-        System.out.println("Compilation successful");
+        reportStats(program);
+        out.println("Compilation successful");
+        return SUCCESS;
     }
 }
@@ -7,8 +7,8 @@ import java.util.ArrayList;
 
 public abstract class Node {
     private int line;
+    private int id = -1;
     private ArrayList<CompileErrorException> errors = new ArrayList<>();
-    public static boolean isCatchErrorsActive = true;
 
     public ArrayList<CompileErrorException> flushErrors() {
         ArrayList<CompileErrorException> errors = this.errors;
@@ -17,9 +17,7 @@ public abstract class Node {
     }
 
     public void addError(CompileErrorException e) {
-        if(Node.isCatchErrorsActive) {
-            this.errors.add(e);
-        }
+        this.errors.add(e);
     }
 
     public boolean hasError() {
@@ -34,6 +32,15 @@ public abstract class Node {
         this.line = line;
     }
 
+    //index of the node in per-compilation side tables, -1 until one assigns it
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public abstract String toString();
 
     public abstract <T> T accept(IVisitor<T> visitor);
@@ -6,8 +6,9 @@ import main.visitor.IVisitor;
 public class Identifier extends Expression{
     private String name;
 
+    //names are interned so member table lookups mostly compare by reference
     public Identifier(String name) {
-        this.name = name;
+        this.name = name.intern();
     }
 
     public String getName() {
@@ -15,7 +16,7 @@ public class Identifier extends Expression{
     }
 
     public void setName(String name) {
-        this.name = name;
+        this.name = name.intern();
     }
 
     @Override
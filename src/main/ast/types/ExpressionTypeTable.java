@@ -0,0 +1,42 @@
+package main.ast.types;
+
+import main.ast.nodes.expression.Expression;
+
+import java.util.Arrays;
+
+//type of every expression resolved during type checking, indexed by node id so later phases read it
+//without inferring it again. ids are handed out by the table; a node numbered by another table
+//(an ast compiled twice) gets a new id, so a stale id never reads someone else's slot
+public class ExpressionTypeTable {
+    private Expression[] expressions = new Expression[256];
+    private Type[] types = new Type[256];
+    private int size;
+
+    public void put(Expression expression, Type type) {
+        int id = expression.getId();
+        if (!owns(expression, id)) {
+            if (size == types.length) {
+                expressions = Arrays.copyOf(expressions, size * 2);
+                types = Arrays.copyOf(types, size * 2);
+            }
+            id = size++;
+            expression.setId(id);
+            expressions[id] = expression;
+        }
+        types[id] = type;
+    }
+
+    //null if the expression was never type checked in this compilation
+    public Type get(Expression expression) {
+        int id = expression.getId();
+        return owns(expression, id) ? types[id] : null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private boolean owns(Expression expression, int id) {
+        return id >= 0 && id < size && expressions[id] == expression;
+    }
+}
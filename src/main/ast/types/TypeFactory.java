@@ -0,0 +1,169 @@
+package main.ast.types;
+
+import main.ast.nodes.expression.Identifier;
+import main.ast.types.functionPointer.FptrType;
+import main.ast.types.list.ListNameType;
+import main.ast.types.list.ListType;
+import main.ast.types.single.BoolType;
+import main.ast.types.single.ClassType;
+import main.ast.types.single.IntType;
+import main.ast.types.single.StringType;
+import main.symbolTable.utils.graph.Graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//canonical types of one compilation: primitive types are shared singletons and list, fptr and
+//class types are hash-consed, so two canonical types are structurally equal iff they are the
+//same object. canonical instances are shared and must never be modified
+public class TypeFactory {
+    public static final IntType INT = new IntType();
+    public static final BoolType BOOL = new BoolType();
+    public static final StringType STRING = new StringType();
+    public static final NoType NO_TYPE = new NoType();
+    public static final NullType NULL = new NullType();
+
+    private Map<String, ClassType> classTypes = new HashMap<>();
+    private Map<List<Object>, ListType> listTypes = new HashMap<>();
+    private Map<List<Type>, FptrType> fptrTypes = new HashMap<>();
+    private Set<Type> canonicalTypes = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Map<Type, Map<Type, Boolean>> subTypes = new IdentityHashMap<>();
+
+    //the canonical instance of a type built anywhere else, looked up by structure. the type checker calls
+    //it once per declared type after checking it, since checking can still change a declared type
+    public Type canonical(Type type) {
+        if (type instanceof IntType)
+            return INT;
+        if (type instanceof BoolType)
+            return BOOL;
+        if (type instanceof StringType)
+            return STRING;
+        if (type instanceof NoType)
+            return NO_TYPE;
+        if (type instanceof NullType)
+            return NULL;
+        if (type == null || canonicalTypes.contains(type))
+            return type;
+        if (type instanceof ClassType)
+            return classType(((ClassType) type).getClassName().getName());
+        if (type instanceof FptrType)
+            return fptrType(((FptrType) type).getArgumentsTypes(), ((FptrType) type).getReturnType());
+        if (type instanceof ListType)
+            return listType(((ListType) type).getElementsTypes());
+        return type;
+    }
+
+    public ClassType classType(String className) {
+        ClassType classType = classTypes.get(className);
+        if (classType == null) {
+            classType = new ClassType(new Identifier(className));
+            classTypes.put(className, classType);
+            canonicalTypes.add(classType);
+        }
+        return classType;
+    }
+
+    public FptrType fptrType(List<Type> argumentsTypes, Type returnType) {
+        List<Type> key = new ArrayList<>(argumentsTypes.size() + 1);
+        key.add(canonical(returnType));
+        for (Type argumentType : argumentsTypes)
+            key.add(canonical(argumentType));
+        FptrType fptrType = fptrTypes.get(key);
+        if (fptrType == null) {
+            fptrType = new FptrType(new ArrayList<>(key.subList(1, key.size())), key.get(0));
+            fptrTypes.put(key, fptrType);
+            canonicalTypes.add(fptrType);
+        }
+        return fptrType;
+    }
+
+    public ListType listType(List<ListNameType> elementsTypes) {
+        List<Object> key = new ArrayList<>(elementsTypes.size() * 2);
+        for (ListNameType elementType : elementsTypes) {
+            key.add(elementType.getName().getName());
+            key.add(canonical(elementType.getType()));
+        }
+        return internListType(key);
+    }
+
+    //list of unnamed elements, the type of a list literal
+    public ListType unnamedListType(List<Type> elementsTypes) {
+        List<Object> key = new ArrayList<>(elementsTypes.size() * 2);
+        for (Type elementType : elementsTypes) {
+            key.add("");
+            key.add(canonical(elementType));
+        }
+        return internListType(key);
+    }
+
+    private ListType internListType(List<Object> key) {
+        ListType listType = listTypes.get(key);
+        if (listType == null) {
+            listType = new ListType();
+            for (int i = 0; i < key.size(); i += 2)
+                listType.addElementType(new ListNameType(new Identifier((String) key.get(i)), (Type) key.get(i + 1)));
+            listTypes.put(key, listType);
+            canonicalTypes.add(listType);
+        }
+        return listType;
+    }
+
+    //subtype relation on canonical types, memoized per pair of instances; the class hierarchy must not
+    //change during a compilation
+    public boolean isSubType(Type first, Type second, Graph<String> classHierarchy) {
+        if (first instanceof NoType)
+            return true;
+        if (second instanceof NoType)
+            return false;
+        //primitive and null types need no memo
+        if (first instanceof IntType || first instanceof BoolType || first instanceof StringType)
+            return first.getClass() == second.getClass();
+        if (first instanceof NullType)
+            return second instanceof NullType || second instanceof ClassType || second instanceof FptrType;
+        Map<Type, Boolean> known = subTypes.get(first);
+        Boolean result = known == null ? null : known.get(second);
+        if (result != null)
+            return result;
+        result = computeSubType(first, second, classHierarchy);
+        subTypes.computeIfAbsent(first, type -> new IdentityHashMap<>()).put(second, result);
+        return result;
+    }
+
+    private boolean computeSubType(Type first, Type second, Graph<String> classHierarchy) {
+        if (first instanceof ClassType && second instanceof ClassType) {
+            String firstName = ((ClassType) first).getClassName().getName();
+            String secondName = ((ClassType) second).getClassName().getName();
+            return classHierarchy.isSecondNodeAncestorOf(firstName, secondName) || firstName.equals(secondName);
+        }
+
+        if (first instanceof FptrType && second instanceof FptrType) {
+            ArrayList<Type> firstArguments = ((FptrType) first).getArgumentsTypes();
+            ArrayList<Type> secondArguments = ((FptrType) second).getArgumentsTypes();
+            if (firstArguments.size() != secondArguments.size() ||
+                    !isSubType(((FptrType) first).getReturnType(), ((FptrType) second).getReturnType(), classHierarchy))
+                return false;
+            for (int i = 0; i < firstArguments.size(); i++)
+                if (!isSubType(firstArguments.get(i), secondArguments.get(i), classHierarchy))
+                    return false;
+            return true;
+        }
+
+        if (first instanceof ListType && second instanceof ListType) {
+            ArrayList<ListNameType> firstElements = ((ListType) first).getElementsTypes();
+            ArrayList<ListNameType> secondElements = ((ListType) second).getElementsTypes();
+            if (firstElements.size() != secondElements.size())
+                return false;
+            for (int i = 0; i < firstElements.size(); i++)
+                if (!isSubType(firstElements.get(i).getType(), secondElements.get(i).getType(), classHierarchy))
+                    return false;
+            return true;
+        }
+
+        return false;
+    }
+}
@@ -5,6 +5,8 @@ public class CompileErrorException extends Exception {
     private String message;
 
     public CompileErrorException(int line, String message) {
+        //diagnostics are collected on the AST, never thrown, so they skip the stack trace
+        super(null, null, false, false);
         this.line = line;
         this.message = message;
     }
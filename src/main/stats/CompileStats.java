@@ -0,0 +1,139 @@
+package main.stats;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class CompileStats {
+    private final ThreadMXBean threadMXBean;
+    private final boolean allocationSupported;
+    private final ArrayList<PhaseStats> phases = new ArrayList<>();
+    private Map<String, Integer> nodeCounts = new TreeMap<>();
+    private String inputName;
+    private int tokens;
+    private int parseFallbacks;
+
+    private String currentPhase;
+    private long wallStart;
+    private long cpuStart;
+    private long allocatedStart;
+
+    public CompileStats(String inputName) {
+        this.inputName = inputName;
+        this.threadMXBean = ManagementFactory.getThreadMXBean();
+        this.allocationSupported = (threadMXBean instanceof com.sun.management.ThreadMXBean)
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported();
+        if (allocationSupported)
+            ((com.sun.management.ThreadMXBean) threadMXBean).setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private long cpuTime() {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    private long allocatedBytes() {
+        if (!allocationSupported)
+            return 0;
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public void startPhase(String name) {
+        if (currentPhase != null)
+            endPhase();
+        currentPhase = name;
+        allocatedStart = allocatedBytes();
+        cpuStart = cpuTime();
+        wallStart = System.nanoTime();
+    }
+
+    public void endPhase() {
+        if (currentPhase == null)
+            return;
+        long wall = System.nanoTime() - wallStart;
+        long cpu = cpuTime() - cpuStart;
+        long allocated = allocationSupported ? allocatedBytes() - allocatedStart : -1;
+        phases.add(new PhaseStats(currentPhase, wall, cpu, allocated));
+        currentPhase = null;
+    }
+
+    public ArrayList<PhaseStats> getPhases() {
+        return phases;
+    }
+
+    public void setTokens(int tokens) {
+        this.tokens = tokens;
+    }
+
+    public void setParseFallbacks(int parseFallbacks) {
+        this.parseFallbacks = parseFallbacks;
+    }
+
+    public void setNodeCounts(Map<String, Integer> nodeCounts) {
+        this.nodeCounts = nodeCounts;
+    }
+
+    public void printTable(PrintStream out) {
+        long totalWall = 0, totalCpu = 0, totalAllocated = 0;
+        out.println("Compile stats for " + inputName + " (" + tokens + " tokens)");
+        out.println(String.format("%-18s %12s %12s %16s", "phase", "wall ms", "cpu ms", "allocated bytes"));
+        for (PhaseStats phase : phases) {
+            out.println(String.format("%-18s %12.3f %12.3f %16d", phase.getName(),
+                    phase.getWallNanos() / 1e6, phase.getCpuNanos() / 1e6, phase.getAllocatedBytes()));
+            totalWall += phase.getWallNanos();
+            totalCpu += phase.getCpuNanos();
+            totalAllocated += phase.getAllocatedBytes();
+        }
+        out.println(String.format("%-18s %12.3f %12.3f %16d", "total",
+                totalWall / 1e6, totalCpu / 1e6, allocationSupported ? totalAllocated : -1));
+        out.println("files parsed again in full LL: " + parseFallbacks);
+        out.println();
+        out.println(String.format("%-24s %10s", "node kind", "visits"));
+        for (Map.Entry<String, Integer> entry : nodeCounts.entrySet())
+            out.println(String.format("%-24s %10d", entry.getKey(), entry.getValue()));
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"input\":\"").append(escape(inputName)).append("\",");
+        json.append("\"tokens\":").append(tokens).append(",");
+        json.append("\"parseFallbacks\":").append(parseFallbacks).append(",");
+        json.append("\"phases\":[");
+        for (int i = 0; i < phases.size(); i++) {
+            PhaseStats phase = phases.get(i);
+            if (i > 0)
+                json.append(",");
+            json.append("{\"name\":\"").append(phase.getName()).append("\",")
+                    .append("\"wallNanos\":").append(phase.getWallNanos()).append(",")
+                    .append("\"cpuNanos\":").append(phase.getCpuNanos()).append(",")
+                    .append("\"allocatedBytes\":").append(phase.getAllocatedBytes()).append("}");
+        }
+        json.append("],\"nodeVisits\":{");
+        boolean first = true;
+        for (Map.Entry<String, Integer> entry : nodeCounts.entrySet()) {
+            if (!first)
+                json.append(",");
+            json.append("\"").append(entry.getKey()).append("\":").append(entry.getValue());
+            first = false;
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    public void writeJson(String path) {
+        try (FileWriter writer = new FileWriter(path)) {
+            writer.write(toJson());
+            writer.write("\n");
+        } catch (IOException e) {
+            System.err.println("Could not write stats to " + path);
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
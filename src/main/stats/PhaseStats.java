@@ -0,0 +1,32 @@
+package main.stats;
+
+public class PhaseStats {
+    private String name;
+    private long wallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+
+    public PhaseStats(String name, long wallNanos, long cpuNanos, long allocatedBytes) {
+        this.name = name;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    //-1 when the JVM does not support per-thread allocation counters
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,56 @@
+package main.symbolTable;
+
+import main.ast.nodes.declaration.classDec.ClassDeclaration;
+import main.symbolTable.items.ClassSymbolTableItem;
+import main.symbolTable.items.FieldSymbolTableItem;
+import main.symbolTable.items.MethodSymbolTableItem;
+import main.symbolTable.items.SymbolTableItem;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+//fields and methods of a class together with the inherited ones, keyed by interned member name.
+//built once after name analysis; lookups return null on a miss instead of throwing
+public class ClassMemberTable {
+    private ClassSymbolTableItem classSymbolTableItem;
+    private Map<String, FieldSymbolTableItem> fields = new HashMap<>();
+    private Map<String, MethodSymbolTableItem> methods = new HashMap<>();
+
+    //members of a subclass hide the ones with the same name in its ancestors
+    public ClassMemberTable(ClassSymbolTableItem classSymbolTableItem) {
+        this.classSymbolTableItem = classSymbolTableItem;
+        Set<SymbolTable> visitedSymbolTables = new HashSet<>();
+        SymbolTable currentSymbolTable = classSymbolTableItem.getClassSymbolTable();
+        while (currentSymbolTable != null && visitedSymbolTables.add(currentSymbolTable)) {
+            for (SymbolTableItem item : currentSymbolTable.getItems()) {
+                if (item instanceof FieldSymbolTableItem)
+                    fields.putIfAbsent(item.getName().intern(), (FieldSymbolTableItem) item);
+                else if (item instanceof MethodSymbolTableItem)
+                    methods.putIfAbsent(item.getName().intern(), (MethodSymbolTableItem) item);
+            }
+            currentSymbolTable = currentSymbolTable.pre;
+        }
+    }
+
+    public ClassSymbolTableItem getClassSymbolTableItem() {
+        return classSymbolTableItem;
+    }
+
+    public ClassDeclaration getClassDeclaration() {
+        return classSymbolTableItem.getClassDeclaration();
+    }
+
+    public FieldSymbolTableItem findField(String name) {
+        return fields.get(name);
+    }
+
+    public MethodSymbolTableItem findMethod(String name) {
+        return methods.get(name);
+    }
+
+    public boolean hasField(String name) {
+        return fields.containsKey(name);
+    }
+}
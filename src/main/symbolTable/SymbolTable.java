@@ -4,35 +4,15 @@ package main.symbolTable;
 import main.symbolTable.exceptions.ItemAlreadyExistsException;
 import main.symbolTable.exceptions.ItemNotFoundException;
 import main.symbolTable.items.SymbolTableItem;
-import main.symbolTable.utils.stack.Stack;
 
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 
 
 public class SymbolTable {
 
-    //Start of static members
-
-    public static SymbolTable top;
-    public static SymbolTable root;
-    private static Stack<SymbolTable> stack = new Stack<>();
-
-    public static void push(SymbolTable symbolTable) {
-        if (top != null)
-            stack.push(top);
-        top = symbolTable;
-    }
-
-    public static void pop() {
-        top = stack.pop();
-    }
-
-    //End of static members
-
     public SymbolTable pre;
     private Map<String, SymbolTableItem> items;
 
@@ -52,20 +32,38 @@ public class SymbolTable {
     }
 
     public SymbolTableItem getItem(String key, Boolean searchCurrent) throws ItemNotFoundException {
-        Set<SymbolTable> visitedSymbolTables = new HashSet<>();
-        SymbolTable currentSymbolTable = this;
-        if(!searchCurrent) {
-            visitedSymbolTables.add(this);
-            currentSymbolTable = this.pre;
-        }
-        while((currentSymbolTable != null) && (!visitedSymbolTables.contains(currentSymbolTable))) {
-            visitedSymbolTables.add( currentSymbolTable );
+        SymbolTableItem symbolTableItem = lookup(key, searchCurrent);
+        if (symbolTableItem == null)
+            throw new ItemNotFoundException();
+        return symbolTableItem;
+    }
+
+    //same search as getItem but returns null on a miss; pre chains can be cyclic after
+    //a cyclic inheritance error, so instead of a visited set a second cursor moving twice
+    //as fast finds the loop, which is then searched for one full lap
+    public SymbolTableItem lookup(String key, boolean searchCurrent) {
+        SymbolTable currentSymbolTable = searchCurrent ? this : this.pre;
+        SymbolTable fastSymbolTable = currentSymbolTable;
+        SymbolTable loopStart = null;
+        while (currentSymbolTable != null && (searchCurrent || currentSymbolTable != this)) {
             SymbolTableItem symbolTableItem = currentSymbolTable.items.get(key);
-            if( symbolTableItem != null )
+            if (symbolTableItem != null)
                 return symbolTableItem;
             currentSymbolTable = currentSymbolTable.pre;
+            if (currentSymbolTable == loopStart)
+                break;
+            if (loopStart == null) {
+                for (int i = 0; i < 2 && fastSymbolTable != null; i++)
+                    fastSymbolTable = fastSymbolTable.pre;
+                if (fastSymbolTable == currentSymbolTable)
+                    loopStart = currentSymbolTable;
+            }
         }
-        throw new ItemNotFoundException();
+        return null;
+    }
+
+    public Collection<SymbolTableItem> getItems() {
+        return items.values();
     }
 
 }
@@ -1,4 +1,9 @@
 package main.symbolTable.exceptions;
 
 public class ItemAlreadyExistsException extends Exception {
+    //thrown as a lookup result, so no stack trace is filled in
+    public ItemAlreadyExistsException() {
+        super(null, null, false, false);
+    }
 }
+
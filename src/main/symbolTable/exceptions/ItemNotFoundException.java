@@ -2,4 +2,9 @@ package main.symbolTable.exceptions;
 
 
 public class ItemNotFoundException extends Exception {
+    //thrown as a lookup result, so no stack trace is filled in
+    public ItemNotFoundException() {
+        super(null, null, false, false);
+    }
 }
+
@@ -8,10 +8,23 @@ import java.util.*;
 public class Graph<N> {
     private Map<N, Set<N>> parentShipRelation = new HashMap<>();
 
+    //int-indexed copy of a single-parent hierarchy numbered by numberNodes(); node a is an
+    //ancestor of b iff enter[a] <= enter[b] and exit[b] <= exit[a]. nodes on or below a
+    //cycle are left unnumbered (enter -1) and answered by the search below.
+    //queries name their nodes (class names from types and declarations), so indices turns a
+    //node into its number; the type factory remembers the answer for each pair of class types,
+    //so type checking looks a pair up here only once
+    private Map<N, Integer> indices;
+    private ArrayList<N> nodes;
+    private ArrayList<ArrayList<Integer>> children;
+    private int[] enter;
+    private int[] exit;
+
     public void addNode(N desired) throws NodeAlreadyExistsException {
         if (parentShipRelation.containsKey(desired))
             throw new NodeAlreadyExistsException();
         parentShipRelation.put(desired, new HashSet<>());
+        enter = null;
     }
 
     public boolean doesGraphContainNode(N desired) {
@@ -22,6 +35,7 @@ public class Graph<N> {
         if (!parentShipRelation.containsKey(desired))
             throw new GraphDoesNotContainNodeException();
         parentShipRelation.get(desired).add(parentNode);
+        enter = null;
     }
 
     public Collection<N> getParentsOfNode(N desired) throws GraphDoesNotContainNodeException {
@@ -30,11 +44,101 @@ public class Graph<N> {
         return parentShipRelation.get(desired);
     }
 
+    private int indexOf(N node) {
+        Integer index = indices.get(node);
+        if (index != null)
+            return index;
+        indices.put(node, nodes.size());
+        nodes.add(node);
+        children.add(new ArrayList<>());
+        return nodes.size() - 1;
+    }
+
+    //call once all nodes and edges are added; changing the graph afterwards drops the numbering
+    public void numberNodes() {
+        indices = new HashMap<>();
+        nodes = new ArrayList<>();
+        children = new ArrayList<>();
+        enter = null;
+        for (Map.Entry<N, Set<N>> entry : parentShipRelation.entrySet()) {
+            indexOf(entry.getKey());
+            for (N parent : entry.getValue())
+                indexOf(parent);
+        }
+        int[] parentOf = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            Set<N> parents = parentShipRelation.get(nodes.get(i));
+            //a class declared twice with different parents; that program stops after name analysis,
+            //whose queries the search answers
+            if (parents != null && parents.size() > 1)
+                return;
+            parentOf[i] = (parents == null || parents.isEmpty()) ? -1 : indices.get(parents.iterator().next());
+        }
+        for (int i = 0; i < nodes.size(); i++)
+            if (parentOf[i] != -1)
+                children.get(parentOf[i]).add(i);
+
+        int[] enter = new int[nodes.size()];
+        int[] exit = new int[nodes.size()];
+        Arrays.fill(enter, -1);
+        int counter = 0;
+        int[] stack = new int[nodes.size()];
+        int[] nextChild = new int[nodes.size()];
+        for (int root = 0; root < nodes.size(); root++) {
+            if (parentOf[root] != -1)
+                continue;
+            int top = 0;
+            stack[0] = root;
+            enter[root] = counter++;
+            while (top >= 0) {
+                int node = stack[top];
+                if (nextChild[node] < children.get(node).size()) {
+                    int child = children.get(node).get(nextChild[node]++);
+                    enter[child] = counter++;
+                    stack[++top] = child;
+                } else {
+                    exit[node] = counter++;
+                    top--;
+                }
+            }
+        }
+        this.exit = exit;
+        this.enter = enter;
+    }
+
     public boolean isSecondNodeAncestorOf(N first , N second) {
+        if (enter != null) {
+            Integer firstIndex = indices.get(first);
+            Integer secondIndex = indices.get(second);
+            if (firstIndex == null || secondIndex == null)
+                return first.equals(second);
+            if (enter[firstIndex] != -1)
+                return enter[secondIndex] != -1 && enter[secondIndex] <= enter[firstIndex] && exit[firstIndex] <= exit[secondIndex];
+        }
         Set<N> visitedNodes = new HashSet<>();
         return _isSecondNodeAncestorOf(first,second, visitedNodes);
     }
 
+    //the node itself and everything below it; linear in the result when the node is numbered
+    public List<N> getDescendantsOfNode(N desired) {
+        List<N> descendants = new ArrayList<>();
+        Integer index = enter == null ? null : indices.get(desired);
+        if (index != null && enter[index] != -1) {
+            ArrayList<Integer> pending = new ArrayList<>();
+            pending.add(index);
+            while (!pending.isEmpty()) {
+                int node = pending.remove(pending.size() - 1);
+                descendants.add(nodes.get(node));
+                pending.addAll(children.get(node));
+            }
+            return descendants;
+        }
+        for (N node : parentShipRelation.keySet())
+            if (isSecondNodeAncestorOf(node, desired))
+                descendants.add(node);
+        return descendants;
+    }
+
     private boolean _isSecondNodeAncestorOf(N first, N second, Set<N> visitedNodes) {
         try {
             if(first.equals(second))
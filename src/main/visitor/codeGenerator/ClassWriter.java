@@ -0,0 +1,15 @@
+package main.visitor.codeGenerator;
+
+//output format of one generated class; methods are added from the instruction buffer, which is
+//reused afterwards
+public interface ClassWriter {
+    void beginClass(String name, String superName);
+
+    void addField(String name, String descriptor);
+
+    void addMethod(String name, String descriptor, boolean isStatic, InstructionBuffer code);
+
+    String getFileName(String className);
+
+    byte[] toByteArray();
+}
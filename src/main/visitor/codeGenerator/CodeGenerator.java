@@ -1,6 +1,6 @@
 package main.visitor.codeGenerator;
 
-import classfileanalyzer.Main;
+import main.CompilationContext;
 import main.ast.nodes.Program;
 import main.ast.nodes.declaration.classDec.ClassDeclaration;
 import main.ast.nodes.declaration.classDec.classMembersDec.ConstructorDeclaration;
@@ -22,6 +22,7 @@ import main.ast.nodes.statement.loop.ForStmt;
 import main.ast.nodes.statement.loop.ForeachStmt;
 import main.ast.types.NullType;
 import main.ast.types.Type;
+import main.ast.types.TypeFactory;
 import main.ast.types.functionPointer.FptrType;
 import main.ast.types.list.ListNameType;
 import main.ast.types.list.ListType;
@@ -29,41 +30,89 @@ import main.ast.types.single.BoolType;
 import main.ast.types.single.ClassType;
 import main.ast.types.single.IntType;
 import main.ast.types.single.StringType;
-import main.symbolTable.SymbolTable;
-import main.symbolTable.exceptions.ItemNotFoundException;
-import main.symbolTable.items.ClassSymbolTableItem;
-import main.symbolTable.items.FieldSymbolTableItem;
+import main.symbolTable.ClassMemberTable;
+import main.symbolTable.items.MethodSymbolTableItem;
 import main.symbolTable.utils.graph.Graph;
 import main.symbolTable.utils.graph.exceptions.GraphDoesNotContainNodeException;
 import main.visitor.Visitor;
+import main.visitor.codeGenerator.classFile.ClassFileWriter;
+import main.visitor.optimizer.LocalUses;
 import main.visitor.typeChecker.ExpressionTypeChecker;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
-
-public class CodeGenerator extends Visitor<String> {
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class CodeGenerator extends Visitor<Void> {
+    private static final int MAX_FPTR_ARITY = 4;
+    private static final String TUPLE_PREFIX = "Tuple$";
+    private static final String OUTPUT_MARKER = ".sophia-output";
+    private static final String FPTR_BOOTSTRAP = "runtime/FptrCallSite/bootstrap(Ljava/lang/invoke/MethodHandles$Lookup;" +
+            "Ljava/lang/String;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;";
+    private final CompilationContext context;
     ExpressionTypeChecker expressionTypeChecker;
     Graph<String> classHierarchy;
     private String outputPath;
-    private FileWriter currentFile;
+    private boolean classFiles;
+    private boolean unboxed;
+    private Map<String, String> superClasses = new HashMap<>();
+    private Set<String> tupleShapes = new TreeSet<>();
+    private ClassWriter currentFile;
+    private ExecutorService fileWriter;
+    private volatile IOException writeError;
     private ClassDeclaration currentClass;
     private MethodDeclaration currentMethod;
-    private int labelCounter;
-    private int tempVars;
+    private InstructionBuffer code = new InstructionBuffer();
+    private Map<String, Integer> slots = new HashMap<>();
+    private int nextTemp;
+    private ArrayList<Integer> freeTemps = new ArrayList<>();
+
+    private Stack<Integer> brkLabels;
+    private Stack<Integer> cntuLabels;
 
-    private Stack<String> brkLabels;
-    private Stack<String> cntuLabels;
+    public CodeGenerator(CompilationContext context, Graph<String> classHierarchy) throws IOException {
+        this(context, classHierarchy, "output/", false);
+    }
 
-    public CodeGenerator(Graph<String> classHierarchy) {
+    //classFiles writes class files instead of jasmin sources
+    public CodeGenerator(CompilationContext context, Graph<String> classHierarchy, String outputPath, boolean classFiles)
+            throws IOException {
+        this.context = context;
         this.classHierarchy = classHierarchy;
-        this.expressionTypeChecker = new ExpressionTypeChecker(classHierarchy);
+        this.expressionTypeChecker = new ExpressionTypeChecker(context, classHierarchy);
+        this.outputPath = outputPath.endsWith("/") ? outputPath : outputPath + "/";
+        this.classFiles = classFiles;
         this.prepareOutputFolder();
-        resetParameters();
         this.brkLabels = new Stack<>();
         this.cntuLabels = new Stack<>();
     }
 
+    //types are recorded by the type checker; only expressions it never reached are inferred again
+    //int and bool locals, fields, parameters and returns become I and Z; they stay boxed inside Fptr calls
+    public void setUnboxed(boolean unboxed) {
+        this.unboxed = unboxed;
+    }
+
+    private Type typeOf(Expression expression) {
+        Type type = context.getExpressionTypes().get(expression);
+        if (type == null)
+            type = expression.accept(expressionTypeChecker);
+        return type;
+    }
+
     private String getExpectedType(Type t) {
         String type = null;
         if (t instanceof IntType)
@@ -73,9 +122,9 @@ public class CodeGenerator extends Visitor<String> {
         if (t instanceof StringType)
             type = "java/lang/String";
         if (t instanceof FptrType)
-            type = "Fptr";
+            type = "runtime/Fptr";
         if (t instanceof ListType)
-            type = "List";
+            type = listClass((ListType) t);
         if (t instanceof ClassType)
             type = ((ClassType) t).getClassName().getName();
         if (t instanceof NullType)
@@ -84,134 +133,138 @@ public class CodeGenerator extends Visitor<String> {
         return type;
     }
 
-    private String getFreshLabel() {
-        return "LABEL_" + (labelCounter++);
-    }
-
-    private String getPrimitiveToClassCmd(Type t) {
-        String castCmd = null;
+    private void addPrimitiveToClassCmd(Type t) {
         if (t instanceof IntType)
-            castCmd = "invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;";
+            code.add(Opcodes.INVOKESTATIC, "java/lang/Integer/valueOf(I)Ljava/lang/Integer;");
         if (t instanceof BoolType)
-            castCmd = "invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;";
-
-        return castCmd;
+            code.add(Opcodes.INVOKESTATIC, "java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;");
     }
 
-    private String getClassToPrimitiveCmd(Type t) {
-        String castCmd = null;
+    private void addClassToPrimitiveCmd(Type t) {
         if (t instanceof IntType)
-            castCmd = "invokevirtual java/lang/Integer/intValue()I";
+            code.add(Opcodes.INVOKEVIRTUAL, "java/lang/Integer/intValue()I");
         else if (t instanceof BoolType)
-            castCmd = "invokevirtual java/lang/Boolean/booleanValue()Z";
-
-        return castCmd;
-    }
-
-    private void prepareOutputFolder() {
-        this.outputPath = "output/";
-        String jasminPath = "utilities/jarFiles/jasmin.jar";
-        String listClassPath = "utilities/codeGenerationUtilityClasses/List.j";
-        String fptrClassPath = "utilities/codeGenerationUtilityClasses/Fptr.j";
-        try{
-            File directory = new File(this.outputPath);
-            File[] files = directory.listFiles();
-            if(files != null)
-                for (File file : files)
-                    file.delete();
-            directory.mkdir();
+            code.add(Opcodes.INVOKEVIRTUAL, "java/lang/Boolean/booleanValue()Z");
+    }
+
+    //on the operand stack int and bool are always primitive, in variables and fields only when unboxed
+    private boolean isUnboxed(Type t) {
+        return unboxed && (t instanceof IntType || t instanceof BoolType);
+    }
+
+    private void addPrimitiveToStoredCmd(Type t) {
+        if (!unboxed)
+            addPrimitiveToClassCmd(t);
+    }
+
+    private void addStoredToPrimitiveCmd(Type t) {
+        if (!unboxed)
+            addClassToPrimitiveCmd(t);
+    }
+
+    private void addLoadCmd(Type t, int slot) {
+        code.add(isUnboxed(t) ? Opcodes.ILOAD : Opcodes.ALOAD, slot);
+    }
+
+    private void addStoreCmd(Type t, int slot) {
+        code.add(isUnboxed(t) ? Opcodes.ISTORE : Opcodes.ASTORE, slot);
+    }
+
+    private static List<Path> listFolder(Path directory) throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            return entries.collect(Collectors.toList());
         }
-        catch(SecurityException e) { }
-        copyFile(jasminPath, this.outputPath + "jasmin.jar");
-        copyFile(listClassPath, this.outputPath + "List.j");
-        copyFile(fptrClassPath, this.outputPath + "Fptr.j");
     }
 
-    private void copyFile(String toBeCopied, String toBePasted) {
-        try {
-            File readingFile = new File(toBeCopied);
-            File writingFile = new File(toBePasted);
-            InputStream readingFileStream = new FileInputStream(readingFile);
-            OutputStream writingFileStream = new FileOutputStream(writingFile);
-            byte[] buffer = new byte[1024];
-            int readLength;
-            while ((readLength = readingFileStream.read(buffer)) > 0)
-                writingFileStream.write(buffer, 0, readLength);
-            readingFileStream.close();
-            writingFileStream.close();
-        } catch (IOException e) { }
-    }
-
-    private void createFile(String name) {
-        try {
-            String path = this.outputPath + name + ".j";
-            File file = new File(path);
-            file.createNewFile();
-            FileWriter fileWriter = new FileWriter(path);
-            this.currentFile = fileWriter;
-        } catch (IOException e) {}
+    private static boolean isGenerated(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".class") || name.endsWith(".j");
     }
 
-    private void addCommand(String command) {
-        try {
-            command = String.join("\n\t\t", command.split("\n"));
-            if(command.startsWith("Label_"))
-                this.currentFile.write("\t" + command + "\n");
-            else if(command.startsWith("."))
-                this.currentFile.write(command + "\n");
-            else
-                this.currentFile.write("\t\t" + command + "\n");
-            this.currentFile.flush();
-        } catch (IOException e) {}
+    //the output folder is chosen by the user, so the compiler marks the folders it writes to and only
+    //clears marked ones, of the files it writes itself. a non-empty folder without the mark is refused
+    private void prepareOutputFolder() throws IOException {
+        Path directory = Paths.get(this.outputPath);
+        Path marker = directory.resolve(OUTPUT_MARKER);
+        if (Files.isDirectory(directory) && !Files.exists(marker) && !listFolder(directory).isEmpty())
+            throw new IOException("not a compiler output folder and not empty");
+        Path runtime = Files.createDirectories(directory.resolve("runtime"));
+        if (!Files.exists(marker))
+            Files.createFile(marker);
+        for (Path folder : new Path[] {directory, runtime})
+            for (Path file : listFolder(folder))
+                if (isGenerated(file))
+                    Files.delete(file);
+        for (String name : RuntimeClasses.RUNTIME_PACKAGE)
+            Files.write(Paths.get(this.outputPath + name + ".class"), RuntimeClasses.runtimeClass(name));
+    }
+
+    //the first class file that could not be written, null when all of them were
+    public IOException getWriteError() {
+        return writeError;
+    }
+
+    private void createFile() {
+        if (classFiles)
+            this.currentFile = new ClassFileWriter(superClasses);
+        else
+            this.currentFile = new JasminWriter(superClasses);
     }
 
+    //each class is written with a single call; while visiting a program the writes run on a
+    //separate thread so the next class is generated meanwhile
+    private void writeFile(String name) {
+        String path = this.outputPath + this.currentFile.getFileName(name);
+        byte[] content = this.currentFile.toByteArray();
+        this.currentFile = null;
+        Runnable write = () -> {
+            try {
+                Files.write(Paths.get(path), content);
+            } catch (IOException e) {
+                if (writeError == null)
+                    writeError = e;
+            }
+        };
+        if (fileWriter != null)
+            fileWriter.execute(write);
+        else
+            write.run();
+    }
+
+    //adds the method whose body is in the instruction buffer
+    private void addMethod(String name, String descriptor, boolean isStatic) {
+        currentFile.addMethod(name, descriptor, isStatic, code);
+    }
+
+    //int and bool defaults are left primitive
     private void addPrimaryValueCmd(Type t) {
-        if (t instanceof IntType) {
-            addCommand("ldc 0");
-            addCommand("invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;");
-        }
-        if (t instanceof BoolType) {
-            addCommand("ldc 0");
-            addCommand("invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;");
-        }
+        if (t instanceof IntType || t instanceof BoolType)
+            code.add(Opcodes.LDC, 0);
         if (t instanceof StringType) {
-            addCommand("ldc \"\"");
-        }
-        if (t instanceof ListType) {
-            ListType listType = (ListType) t;
-            addCommand("new List\n" +
-                    "dup\n" +
-                    "new java/util/ArrayList\n" +
-                    "dup\n" +
-                    "invokespecial java/util/ArrayList/<init>()V");
-            for (ListNameType member : listType.getElementsTypes()) {
-                addCommand("dup\n");
-                addPrimaryValueCmd(member.getType());
-                addCommand("invokevirtual java/util/ArrayList/add(Ljava/lang/Object;)Z\n" +
-                        "pop");
-            }
-            addCommand("invokespecial List/<init>(Ljava/util/ArrayList;)V");
+            code.add(Opcodes.LDC_STRING, "");
         }
+        if (t instanceof ListType)
+            addNewListCmd((ListType) t, null);
         if (t instanceof FptrType) {
-            addCommand("aconst_null");
+            code.add(Opcodes.ACONST_NULL);
         }
         if (t instanceof ClassType) {
-            addCommand("aconst_null");
+            code.add(Opcodes.ACONST_NULL);
         }
     }
 
     private String makeTypeSignature(Type t) {
         String signature = null;
         if (t instanceof IntType)
-            signature = "Ljava/lang/Integer;";
+            signature = unboxed ? "I" : "Ljava/lang/Integer;";
         if (t instanceof BoolType)
-            signature = "Ljava/lang/Boolean;";
+            signature = unboxed ? "Z" : "Ljava/lang/Boolean;";
         if (t instanceof StringType)
             signature = "Ljava/lang/String;";
         if (t instanceof FptrType)
-            signature = "LFptr;";
+            signature = "Lruntime/Fptr;";
         if (t instanceof ListType)
-            signature = "LList;";
+            signature = "L" + listClass((ListType) t) + ";";
         if (t instanceof ClassType)
             signature = "L" + ((ClassType) t).getClassName().getName() + ";";
         if (t instanceof NullType)
@@ -220,92 +273,304 @@ public class CodeGenerator extends Visitor<String> {
         return signature;
     }
 
-    private void resetParameters() {
-        labelCounter = 0;
-        tempVars = -1;
+    //slots of the arguments and local variables of a method, temps go after them
+    private void enterMethod(MethodDeclaration methodDeclaration) {
+        slots.clear();
+        int slot = 1;
+        for (VarDeclaration arg : methodDeclaration.getArgs())
+            slots.putIfAbsent(arg.getVarName().getName(), slot++);
+        for (VarDeclaration localVar : methodDeclaration.getLocalVars())
+            slots.putIfAbsent(localVar.getVarName().getName(), slot++);
+        nextTemp = slot;
+        freeTemps.clear();
     }
 
-    private void addDefaultConstructor() {
-        addCommand(".method public <init>()V\n" +
-                ".limit stack 128\n" +
-                ".limit locals 128\n" +
-                "aload_0");
-
-        String invokeCmd = "invokespecial ";
+    private void addSuperConstructorCall() {
+        code.add(Opcodes.ALOAD, 0);
         if (currentClass.getParentClassName() != null)
-            invokeCmd += currentClass.getParentClassName().getName();
+            code.add(Opcodes.INVOKESPECIAL, currentClass.getParentClassName().getName() + "/<init>()V");
         else
-            invokeCmd += "java/lang/Object";
-
-        invokeCmd += "/<init>()V";
-        addCommand(invokeCmd);
+            code.add(Opcodes.INVOKESPECIAL, "java/lang/Object/<init>()V");
+    }
 
+    private void addFieldInitializers() {
+        String className = currentClass.getClassName().getName();
         for (FieldDeclaration field : currentClass.getFields()){
             String fieldName = field.getVarDeclaration().getVarName().getName();
             Type fieldType = field.getVarDeclaration().getType();
 
-            addCommand("aload_0");
+            code.add(Opcodes.ALOAD, 0);
             addPrimaryValueCmd(fieldType);
-            addCommand("putfield " + currentClass.getClassName().getName()
-                    + "/" + fieldName + " " + makeTypeSignature(fieldType));
+            addPrimitiveToStoredCmd(fieldType);
+            code.add(Opcodes.PUTFIELD, className + "/" + fieldName + " " + makeTypeSignature(fieldType));
         }
-        addCommand("return\n" +
-                ".end method");
+    }
+
+    private void addDefaultConstructor() {
+        code.reset();
+        addSuperConstructorCall();
+        addFieldInitializers();
+        code.add(Opcodes.RETURN);
+        addMethod("<init>", "()V", false);
     }
 
     private void addStaticMainMethod() {
-        addCommand(".method public static main([Ljava/lang/String;)V\n" +
-                ".limit stack 128\n" +
-                ".limit locals 128\n" +
-                "new Main\n" +
-                "invokespecial Main/<init>()V\n" +
-                "return\n" +
-                ".end method");
+        code.reset();
+        code.add(Opcodes.NEW, "Main");
+        code.add(Opcodes.INVOKESPECIAL, "Main/<init>()V");
+        code.add(Opcodes.RETURN);
+        addMethod("main", "([Ljava/lang/String;)V", true);
     }
 
     private int slotOf(String identifier) {
-        if (identifier.equals("")) {
-            if (tempVars < 0)
-                tempVars = currentMethod.getLocalVars().size() + currentMethod.getArgs().size();
-            tempVars++;
-            return tempVars;
+        return slots.getOrDefault(identifier, -1);
+    }
+
+    //temps are freed right after their last use, so later temps of the method reuse the slot
+    private int allocateTemp() {
+        if (freeTemps.isEmpty())
+            return nextTemp++;
+        return freeTemps.remove(freeTemps.size() - 1);
+    }
+
+    private void freeTemp(int slot) {
+        freeTemps.add(slot);
+    }
+
+    //position of a member in a list type, the size of the list if there is no such member
+    private int indexOfListMember(ListType listType, String memberName) {
+        ArrayList<ListNameType> elementsTypes = listType.getElementsTypes();
+        int i;
+        for (i = 0; i < elementsTypes.size(); i++) {
+            if (memberName.equals(elementsTypes.get(i).getName().getName()))
+                break;
+        }
+        return i;
+    }
+
+    //lists are stored by the kinds of their elements: I for int, Z for bool, L for a nested list and O for
+    //any other reference. subtyping keeps the kinds, so a list type and its subtypes share one class
+    private static String shapeOf(ListType listType) {
+        StringBuilder shape = new StringBuilder();
+        for (ListNameType member : listType.getElementsTypes()) {
+            Type type = member.getType();
+            if (type instanceof IntType)
+                shape.append('I');
+            else if (type instanceof BoolType)
+                shape.append('Z');
+            else if (type instanceof ListType)
+                shape.append('L');
+            else
+                shape.append('O');
+        }
+        return shape.toString();
+    }
+
+    //ints and bools alone are kept in primitive arrays and lists of references in an object array; any
+    //other mix gets a tuple class with a typed field per element, generated once per shape
+    private String listClass(ListType listType) {
+        String shape = shapeOf(listType);
+        if (!shape.isEmpty() && shape.replace("I", "").isEmpty())
+            return "runtime/IntList";
+        if (!shape.isEmpty() && shape.replace("Z", "").isEmpty())
+            return "runtime/BoolList";
+        if (shape.indexOf('I') < 0 && shape.indexOf('Z') < 0)
+            return "runtime/ObjectList";
+        tupleShapes.add(shape);
+        return TUPLE_PREFIX + shape;
+    }
+
+    private static boolean isTuple(String listClass) {
+        return listClass.startsWith(TUPLE_PREFIX);
+    }
+
+    private static String tupleFieldDescriptor(char kind) {
+        if (kind == 'I')
+            return "I";
+        if (kind == 'Z')
+            return "Z";
+        if (kind == 'L')
+            return "Lruntime/SophiaList;";
+        return "Ljava/lang/Object;";
+    }
+
+    private void addCheckcastCmd(Type t) {
+        if (!(t instanceof NullType))
+            code.add(Opcodes.CHECKCAST, getExpectedType(t));
+    }
+
+    //a tuple has no element at a constant position past its end, the access fails when it runs
+    private void addIndexErrorCmd(int position) {
+        code.add(Opcodes.NEW, "java/lang/IndexOutOfBoundsException");
+        code.add(Opcodes.DUP);
+        code.add(Opcodes.LDC, position);
+        code.add(Opcodes.INVOKESPECIAL, "java/lang/IndexOutOfBoundsException/<init>(I)V");
+        code.add(Opcodes.ATHROW);
+    }
+
+    //the elements of a tuple are fields, so their positions are constants; other lists take the
+    //position on the stack, from index or else the constant position
+    private void addPositionCmd(String listClass, Expression index, int position) {
+        if (isTuple(listClass))
+            return;
+        if (index != null)
+            index.accept(this);
+        else
+            code.add(Opcodes.LDC, position);
+    }
+
+    private static int positionOf(Expression index) {
+        return index instanceof IntValue ? ((IntValue) index).getConstant() : -1;
+    }
+
+    //list and position on the stack, replaced by the element
+    private void addElementGetCmd(String listClass, int position, Type elementType) {
+        if (isTuple(listClass)) {
+            String shape = listClass.substring(TUPLE_PREFIX.length());
+            if (position >= shape.length()) {
+                addIndexErrorCmd(position);
+                return;
+            }
+            code.add(Opcodes.GETFIELD, listClass + "/e" + position + " " + tupleFieldDescriptor(shape.charAt(position)));
+            if (shape.charAt(position) == 'O' || shape.charAt(position) == 'L')
+                addCheckcastCmd(elementType);
         }
+        else if (listClass.equals("runtime/IntList"))
+            code.add(Opcodes.INVOKEVIRTUAL, "runtime/IntList/get(I)I");
+        else if (listClass.equals("runtime/BoolList"))
+            code.add(Opcodes.INVOKEVIRTUAL, "runtime/BoolList/get(I)Z");
+        else {
+            code.add(Opcodes.INVOKEVIRTUAL, "runtime/ObjectList/get(I)Ljava/lang/Object;");
+            addCheckcastCmd(elementType);
+        }
+    }
 
-        int result = 1;
-        ArrayList<VarDeclaration> args = currentMethod.getArgs();
-        for (VarDeclaration arg : args) {
-            if (arg.getVarName().getName().equals(identifier))
-                return result;
-            result++;
+    //list, position and value on the stack, all three consumed
+    private void addElementSetCmd(String listClass, int position) {
+        if (isTuple(listClass)) {
+            String shape = listClass.substring(TUPLE_PREFIX.length());
+            if (position >= shape.length())
+                addIndexErrorCmd(position);
+            else
+                code.add(Opcodes.PUTFIELD, listClass + "/e" + position + " " + tupleFieldDescriptor(shape.charAt(position)));
         }
-        ArrayList<VarDeclaration> localVars = currentMethod.getLocalVars();
-        for (VarDeclaration localVar : localVars) {
-            if (localVar.getVarName().getName().equals(identifier))
-                return result;
-            result++;
+        else if (listClass.equals("runtime/IntList"))
+            code.add(Opcodes.INVOKEVIRTUAL, "runtime/IntList/set(II)V");
+        else if (listClass.equals("runtime/BoolList"))
+            code.add(Opcodes.INVOKEVIRTUAL, "runtime/BoolList/set(IZ)V");
+        else
+            code.add(Opcodes.INVOKEVIRTUAL, "runtime/ObjectList/set(ILjava/lang/Object;)V");
+    }
+
+    //a new list with the values of elements, or with defaults when elements is null. zero, false and
+    //null are already there in a new IntList, BoolList or ObjectList
+    private void addNewListCmd(ListType listType, ArrayList<Expression> elements) {
+        ArrayList<ListNameType> elementTypes = listType.getElementsTypes();
+        String listClass = listClass(listType);
+        code.add(Opcodes.NEW, listClass);
+        code.add(Opcodes.DUP);
+        if (isTuple(listClass)) {
+            String shape = listClass.substring(TUPLE_PREFIX.length());
+            String descriptor = "(";
+            for (int i = 0; i < shape.length(); i++) {
+                if (elements == null)
+                    addPrimaryValueCmd(elementTypes.get(i).getType());
+                else
+                    elements.get(i).accept(this);
+                descriptor += tupleFieldDescriptor(shape.charAt(i));
+            }
+            code.add(Opcodes.INVOKESPECIAL, listClass + "/<init>" + descriptor + ")V");
+            return;
+        }
+        code.add(Opcodes.LDC, elementTypes.size());
+        code.add(Opcodes.INVOKESPECIAL, listClass + "/<init>(I)V");
+        for (int i = 0; i < elementTypes.size(); i++) {
+            Type type = elementTypes.get(i).getType();
+            if (elements == null && !(type instanceof StringType || type instanceof ListType))
+                continue;
+            code.add(Opcodes.DUP);
+            code.add(Opcodes.LDC, i);
+            if (elements == null)
+                addPrimaryValueCmd(type);
+            else
+                elements.get(i).accept(this);
+            addElementSetCmd(listClass, i);
+        }
+    }
+
+    //the class of a tuple shape: a field per element, a constructor taking all of them and a deep copy
+    private void addTupleClass(String shape) {
+        String name = TUPLE_PREFIX + shape;
+        createFile();
+        currentFile.beginClass(name, "runtime/SophiaList");
+        String descriptor = "(";
+        for (int i = 0; i < shape.length(); i++) {
+            currentFile.addField("e" + i, tupleFieldDescriptor(shape.charAt(i)));
+            descriptor += tupleFieldDescriptor(shape.charAt(i));
+        }
+        descriptor += ")V";
+
+        code.reset();
+        code.add(Opcodes.ALOAD, 0);
+        code.add(Opcodes.INVOKESPECIAL, "runtime/SophiaList/<init>()V");
+        for (int i = 0; i < shape.length(); i++) {
+            char kind = shape.charAt(i);
+            code.add(Opcodes.ALOAD, 0);
+            code.add(kind == 'I' || kind == 'Z' ? Opcodes.ILOAD : Opcodes.ALOAD, i + 1);
+            code.add(Opcodes.PUTFIELD, name + "/e" + i + " " + tupleFieldDescriptor(kind));
+        }
+        code.add(Opcodes.RETURN);
+        addMethod("<init>", descriptor, false);
+
+        code.reset();
+        code.add(Opcodes.NEW, name);
+        code.add(Opcodes.DUP);
+        for (int i = 0; i < shape.length(); i++) {
+            code.add(Opcodes.ALOAD, 0);
+            code.add(Opcodes.GETFIELD, name + "/e" + i + " " + tupleFieldDescriptor(shape.charAt(i)));
+            if (shape.charAt(i) == 'L')
+                code.add(Opcodes.INVOKEVIRTUAL, "runtime/SophiaList/copy()Lruntime/SophiaList;");
         }
-        return -1;
+        code.add(Opcodes.INVOKESPECIAL, name + "/<init>" + descriptor);
+        code.add(Opcodes.ARETURN);
+        addMethod("copy", "()Lruntime/SophiaList;", false);
+        writeFile(name);
     }
 
     @Override
-    public String visit(Program program) {
+    public Void visit(Program program) {
         ArrayList<ClassDeclaration> classes = program.getClasses();
-        for (ClassDeclaration sophiaClass : classes) {
-            currentClass = sophiaClass;
-            expressionTypeChecker.setCurrentClass(sophiaClass);
-            sophiaClass.accept(this);
+        for (ClassDeclaration sophiaClass : classes)
+            if (sophiaClass.getParentClassName() != null)
+                superClasses.put(sophiaClass.getClassName().getName(), sophiaClass.getParentClassName().getName());
+        fileWriter = Executors.newSingleThreadExecutor();
+        try {
+            for (ClassDeclaration sophiaClass : classes) {
+                currentClass = sophiaClass;
+                expressionTypeChecker.setCurrentClassDeclaration(sophiaClass);
+                sophiaClass.accept(this);
+            }
+            for (String shape : tupleShapes)
+                addTupleClass(shape);
+        } finally {
+            fileWriter.shutdown();
+            try {
+                fileWriter.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            fileWriter = null;
         }
         return null;
     }
 
     @Override
-    public String visit(ClassDeclaration classDeclaration) {
-        createFile(classDeclaration.getClassName().getName());
-        addCommand(".class public " + classDeclaration.getClassName().getName());
+    public Void visit(ClassDeclaration classDeclaration) {
+        createFile();
         if (classDeclaration.getParentClassName() == null)
-            addCommand(".super java/lang/Object");
+            currentFile.beginClass(classDeclaration.getClassName().getName(), "java/lang/Object");
         else
-            addCommand(".super " + classDeclaration.getParentClassName().getName());
+            currentFile.beginClass(classDeclaration.getClassName().getName(), classDeclaration.getParentClassName().getName());
 
         ArrayList<FieldDeclaration> fields = classDeclaration.getFields();
         ArrayList<MethodDeclaration> methods = classDeclaration.getMethods();
@@ -313,27 +578,26 @@ public class CodeGenerator extends Visitor<String> {
         for (FieldDeclaration field : fields)
             field.accept(this);
 
-        resetParameters();
         if (constructorDeclaration != null) {
             currentMethod = constructorDeclaration;
-            expressionTypeChecker.setCurrentMethod(constructorDeclaration);
+            expressionTypeChecker.setCurrentMethodDeclaration(constructorDeclaration);
             constructorDeclaration.accept(this);
         }
         else
             addDefaultConstructor();
 
-        resetParameters();
         for (MethodDeclaration methodDeclaration : methods) {
             currentMethod = methodDeclaration;
-            expressionTypeChecker.setCurrentMethod(methodDeclaration);
+            expressionTypeChecker.setCurrentMethodDeclaration(methodDeclaration);
             methodDeclaration.accept(this);
         }
 
+        writeFile(classDeclaration.getClassName().getName());
         return null;
     }
 
     @Override
-    public String visit(ConstructorDeclaration constructorDeclaration) {
+    public Void visit(ConstructorDeclaration constructorDeclaration) {
         if (currentClass.getClassName().getName().equals("Main"))
             addStaticMainMethod();
 
@@ -345,38 +609,23 @@ public class CodeGenerator extends Visitor<String> {
     }
 
     @Override
-    public String visit(MethodDeclaration methodDeclaration) {
-        String signature;
+    public Void visit(MethodDeclaration methodDeclaration) {
+        String name;
         if(methodDeclaration instanceof ConstructorDeclaration)
-            signature = ".method public <init>(";
+            name = "<init>";
         else
-            signature = ".method public " + methodDeclaration.getMethodName().getName() + "(";
+            name = methodDeclaration.getMethodName().getName();
 
+        String descriptor = "(";
         for (VarDeclaration arg : methodDeclaration.getArgs())
-            signature += makeTypeSignature(arg.getType());
-        signature += ")" + makeTypeSignature(methodDeclaration.getReturnType());
-        addCommand(signature);
-        addCommand(".limit stack 128");
-        addCommand(".limit locals 128");
+            descriptor += makeTypeSignature(arg.getType());
+        descriptor += ")" + makeTypeSignature(methodDeclaration.getReturnType());
 
+        code.reset();
+        enterMethod(methodDeclaration);
         if(methodDeclaration instanceof ConstructorDeclaration) {
-            addCommand("aload_0");
-            String invokeCmd = "invokespecial ";
-            if (currentClass.getParentClassName() != null)
-                invokeCmd += currentClass.getParentClassName().getName();
-            else
-                invokeCmd += "java/lang/Object";
-            invokeCmd += "/<init>()V";
-            addCommand(invokeCmd);
-
-            for (FieldDeclaration fieldDeclaration : currentClass.getFields()){
-                addCommand("aload_0");
-                String className = currentClass.getClassName().getName();
-                String fieldName = fieldDeclaration.getVarDeclaration().getVarName().getName();
-                Type fieldType = fieldDeclaration.getVarDeclaration().getType();
-                addPrimaryValueCmd(fieldType);
-                addCommand("putfield " + className + "/" + fieldName + " " + makeTypeSignature(fieldType));
-            }
+            addSuperConstructorCall();
+            addFieldInitializers();
         }
 
         for (VarDeclaration var : methodDeclaration.getLocalVars())
@@ -386,75 +635,79 @@ public class CodeGenerator extends Visitor<String> {
             s.accept(this);
 
         if (!methodDeclaration.getDoesReturn())
-            addCommand("return");
+            code.add(Opcodes.RETURN);
 
-        addCommand(".end method");
+        addMethod(name, descriptor, false);
         return null;
     }
 
     @Override
-    public String visit(FieldDeclaration fieldDeclaration) {
-        addCommand(".field " + fieldDeclaration.getVarDeclaration().getVarName().getName()
-                + " " + makeTypeSignature(fieldDeclaration.getVarDeclaration().getType()));
+    public Void visit(FieldDeclaration fieldDeclaration) {
+        currentFile.addField(fieldDeclaration.getVarDeclaration().getVarName().getName(),
+                makeTypeSignature(fieldDeclaration.getVarDeclaration().getType()));
         return null;
     }
 
     @Override
-    public String visit(VarDeclaration varDeclaration) {
+    public Void visit(VarDeclaration varDeclaration) {
         addPrimaryValueCmd(varDeclaration.getType());
-        addCommand("astore " + slotOf(varDeclaration.getVarName().getName()));
+        addPrimitiveToStoredCmd(varDeclaration.getType());
+        addStoreCmd(varDeclaration.getType(), slotOf(varDeclaration.getVarName().getName()));
         return null;
     }
 
     @Override
-    public String visit(AssignmentStmt assignmentStmt) {
+    public Void visit(AssignmentStmt assignmentStmt) {
         BinaryExpression assignmentExpression = new BinaryExpression(assignmentStmt.getlValue(),
                 assignmentStmt.getrValue(), BinaryOperator.assign);
-        addCommand(assignmentExpression.accept(this));
-        addCommand("pop");
+        assignmentExpression.accept(this);
+        code.add(Opcodes.POP);
         return null;
     }
 
     @Override
-    public String visit(BlockStmt blockStmt) {
+    public Void visit(BlockStmt blockStmt) {
         for (Statement statement : blockStmt.getStatements())
             statement.accept(this);
         return null;
     }
 
     @Override
-    public String visit(ConditionalStmt conditionalStmt) {
-        addCommand(conditionalStmt.getCondition().accept(this));
+    public Void visit(ConditionalStmt conditionalStmt) {
+        conditionalStmt.getCondition().accept(this);
 
-        String ELSE = getFreshLabel();
-        String AFTER = getFreshLabel();
+        int ELSE = code.newLabel();
+        int AFTER = code.newLabel();
 
-        addCommand("ifeq " + ELSE);
+        code.add(Opcodes.IFEQ, ELSE);
 
         conditionalStmt.getThenBody().accept(this);
-        addCommand("goto " + AFTER);
+        code.add(Opcodes.GOTO, AFTER);
 
-        addCommand(ELSE + ":");
+        code.addLabel(ELSE);
         if (conditionalStmt.getElseBody() != null)
             conditionalStmt.getElseBody().accept(this);
 
-        addCommand(AFTER + ":");
+        code.addLabel(AFTER);
         return null;
     }
 
     @Override
-    public String visit(MethodCallStmt methodCallStmt) {
+    public Void visit(MethodCallStmt methodCallStmt) {
         expressionTypeChecker.setIsInMethodCallStmt(true);
-        addCommand(methodCallStmt.getMethodCall().accept(this));
-        addCommand("pop");
+        MethodCall methodCall = methodCallStmt.getMethodCall();
+        methodCall.accept(this);
+        //the Fptr invoke methods return null for void methods, direct calls leave nothing
+        if (!(typeOf(methodCall) instanceof NullType) || directCallTarget(methodCall) == null)
+            code.add(Opcodes.POP);
         expressionTypeChecker.setIsInMethodCallStmt(false);
         return null;
     }
 
     @Override
-    public String visit(PrintStmt print) {
-        Type argType = print.getArg().accept(expressionTypeChecker);
-        addCommand("getstatic java/lang/System/out Ljava/io/PrintStream;");
+    public Void visit(PrintStmt print) {
+        Type argType = typeOf(print.getArg());
+        code.add(Opcodes.GETSTATIC, "java/lang/System/out Ljava/io/PrintStream;");
         String primitiveType = null;
         if (argType instanceof IntType)
             primitiveType = "I";
@@ -463,77 +716,108 @@ public class CodeGenerator extends Visitor<String> {
         else if (argType instanceof StringType)
             primitiveType = "Ljava/lang/String;";
 
-        addCommand(print.getArg().accept(this));
+        print.getArg().accept(this);
 
-        addCommand("invokevirtual java/io/PrintStream/print(" + primitiveType + ")V");
+        code.add(Opcodes.INVOKEVIRTUAL, "java/io/PrintStream/print(" + primitiveType + ")V");
         return null;
     }
 
     @Override
-    public String visit(ReturnStmt returnStmt) {
-        Type returnType = returnStmt.getReturnedExpr().accept(expressionTypeChecker);
+    public Void visit(ReturnStmt returnStmt) {
+        Type returnType = typeOf(returnStmt.getReturnedExpr());
         if(returnType instanceof NullType)
-            addCommand("return");
+            code.add(Opcodes.RETURN);
         else {
-            addCommand(returnStmt.getReturnedExpr().accept(this));
-            if (returnType instanceof IntType)
-                addCommand("invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;");
-            if (returnType instanceof BoolType)
-                addCommand("invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;");
-            addCommand("areturn");
+            returnStmt.getReturnedExpr().accept(this);
+            addPrimitiveToStoredCmd(returnType);
+            code.add(isUnboxed(returnType) ? Opcodes.IRETURN : Opcodes.ARETURN);
         }
         return null;
     }
 
     @Override
-    public String visit(BreakStmt breakStmt) {
-        addCommand("goto " + brkLabels.peek());
+    public Void visit(BreakStmt breakStmt) {
+        code.add(Opcodes.GOTO, brkLabels.peek());
         return null;
     }
 
     @Override
-    public String visit(ContinueStmt continueStmt) {
-        addCommand("goto " + cntuLabels.peek());
+    public Void visit(ContinueStmt continueStmt) {
+        code.add(Opcodes.GOTO, cntuLabels.peek());
         return null;
     }
 
+    private boolean isUnchangedLocal(Expression list, Statement body) {
+        if (!(list instanceof Identifier) || slotOf(((Identifier) list).getName()) == -1)
+            return false;
+        LocalUses uses = new LocalUses();
+        body.accept(uses);
+        String name = ((Identifier) list).getName();
+        return !uses.getAssigned().contains(name) && !uses.getChangedInPlace().contains(name);
+    }
+
     @Override
-    public String visit(ForeachStmt foreachStmt) {
-        String START = getFreshLabel();
-        String CONTINUE = getFreshLabel();
-        String BREAK = getFreshLabel();
+    public Void visit(ForeachStmt foreachStmt) {
+        int START = code.newLabel();
+        int CONTINUE = code.newLabel();
+        int BREAK = code.newLabel();
 
         cntuLabels.push(CONTINUE);
         brkLabels.push(BREAK);
 
-        ListType listType = (ListType) foreachStmt.getList().accept(expressionTypeChecker);
-        int containerSlot = slotOf("");
-        int iteratorSlot = slotOf("");
-        Type memberType = foreachStmt.getVariable().accept(expressionTypeChecker);
-
-        addCommand("ldc 0\n" +
-                "istore " + iteratorSlot);
-
-        addCommand(foreachStmt.getList().accept(this) + "\n" +
-                "astore " + containerSlot);
-
-        addCommand(START + ":\n" +
-                "iload " + iteratorSlot + "\n" +
-                "ldc " + listType.getElementsTypes().size() + "\n" +
-                "if_icmpge " + BREAK);
-
-        addCommand("aload " + containerSlot + "\n" +
-                "iload " + iteratorSlot + "\n" +
-                "invokevirtual List/getElement(I)Ljava/lang/Object;\n" +
-                "checkcast " + getExpectedType(memberType) + "\n" +
-                "astore " + slotOf(foreachStmt.getVariable().getName()));
+        //foreach lists have elements of one type, so they are never tuples. a local the body neither
+        //assigns nor changes in place keeps its backing array, so the loop fetches the array once and
+        //indexes it. any other list is read through get each iteration, as a write in the body may
+        //copy the array away from under the loop
+        ListType listType = (ListType) typeOf(foreachStmt.getList());
+        String listClass = listClass(listType);
+        boolean overArray = isUnchangedLocal(foreachStmt.getList(), foreachStmt.getBody());
+        int containerSlot = allocateTemp();
+        int iteratorSlot = allocateTemp();
+        Type memberType = typeOf(foreachStmt.getVariable());
+
+        code.add(Opcodes.LDC, 0);
+        code.add(Opcodes.ISTORE, iteratorSlot);
+
+        foreachStmt.getList().accept(this);
+        if (overArray) {
+            if (listClass.equals("runtime/IntList"))
+                code.add(Opcodes.INVOKEVIRTUAL, "runtime/IntList/elements()[I");
+            else if (listClass.equals("runtime/BoolList"))
+                code.add(Opcodes.INVOKEVIRTUAL, "runtime/BoolList/elements()[Z");
+            else
+                code.add(Opcodes.INVOKEVIRTUAL, "runtime/ObjectList/elements()[Ljava/lang/Object;");
+        }
+        code.add(Opcodes.ASTORE, containerSlot);
+
+        code.addLabel(START);
+        code.add(Opcodes.ILOAD, iteratorSlot);
+        code.add(Opcodes.LDC, listType.getElementsTypes().size());
+        code.add(Opcodes.IF_ICMPGE, BREAK);
+
+        code.add(Opcodes.ALOAD, containerSlot);
+        code.add(Opcodes.ILOAD, iteratorSlot);
+        if (!overArray)
+            addElementGetCmd(listClass, 0, memberType);
+        else if (listClass.equals("runtime/IntList"))
+            code.add(Opcodes.IALOAD);
+        else if (listClass.equals("runtime/BoolList"))
+            code.add(Opcodes.BALOAD);
+        else {
+            code.add(Opcodes.AALOAD);
+            addCheckcastCmd(memberType);
+        }
+        addPrimitiveToStoredCmd(memberType);
+        addStoreCmd(memberType, slotOf(foreachStmt.getVariable().getName()));
 
         foreachStmt.getBody().accept(this);
 
-        addCommand(CONTINUE + ":\n" +
-                "iinc " + iteratorSlot + " 1\n" +
-                "goto " + START + "\n" +
-                BREAK + ":");
+        code.addLabel(CONTINUE);
+        code.addIinc(iteratorSlot, 1);
+        code.add(Opcodes.GOTO, START);
+        code.addLabel(BREAK);
+        freeTemp(iteratorSlot);
+        freeTemp(containerSlot);
 
         cntuLabels.pop();
         brkLabels.pop();
@@ -541,10 +825,10 @@ public class CodeGenerator extends Visitor<String> {
     }
 
     @Override
-    public String visit(ForStmt forStmt) {
-        String START = getFreshLabel();
-        String CONTINUE = getFreshLabel();
-        String BREAK = getFreshLabel();
+    public Void visit(ForStmt forStmt) {
+        int START = code.newLabel();
+        int CONTINUE = code.newLabel();
+        int BREAK = code.newLabel();
 
         cntuLabels.push(CONTINUE);
         brkLabels.push(BREAK);
@@ -552,21 +836,20 @@ public class CodeGenerator extends Visitor<String> {
         if (forStmt.getInitialize() != null)
             forStmt.getInitialize().accept(this);
 
-        addCommand(START + ":");
+        code.addLabel(START);
         if (forStmt.getCondition() != null) {
-            String conditionCmd = forStmt.getCondition().accept(this);
-            addCommand(conditionCmd);
-            addCommand("ifeq " + BREAK);
+            forStmt.getCondition().accept(this);
+            code.add(Opcodes.IFEQ, BREAK);
         }
 
         forStmt.getBody().accept(this);
 
-        addCommand(CONTINUE + ":");
+        code.addLabel(CONTINUE);
         if (forStmt.getUpdate() != null)
             forStmt.getUpdate().accept(this);
-        addCommand("goto " + START);
+        code.add(Opcodes.GOTO, START);
 
-        addCommand(BREAK + ":");
+        code.addLabel(BREAK);
 
         cntuLabels.pop();
         brkLabels.pop();
@@ -574,572 +857,477 @@ public class CodeGenerator extends Visitor<String> {
     }
 
     @Override
-    public String visit(BinaryExpression binaryExpression) {
+    public Void visit(BinaryExpression binaryExpression) {
         BinaryOperator operator = binaryExpression.getBinaryOperator();
-        String commands = "";
 
-        commands += binaryExpression.getFirstOperand().accept(this);
-        commands += "\n" + binaryExpression.getSecondOperand().accept(this);
+        //and, or evaluate their operands lazily and assign evaluates only the right one as a value
+        if (operator == BinaryOperator.and) {
+            int TRUE = code.newLabel();
+            int FALSE = code.newLabel();
+            int AFTER = code.newLabel();
+
+            binaryExpression.getFirstOperand().accept(this);
+            code.add(Opcodes.IFEQ, FALSE);
+            binaryExpression.getSecondOperand().accept(this);
+            code.add(Opcodes.IFEQ, FALSE);
+            code.addLabel(TRUE);
+            code.add(Opcodes.LDC, 1);
+            code.add(Opcodes.GOTO, AFTER);
+            code.addLabel(FALSE);
+            code.add(Opcodes.LDC, 0);
+            code.addLabel(AFTER);
+            return null;
+        }
+        if (operator == BinaryOperator.or) {
+            int TRUE = code.newLabel();
+            int FALSE = code.newLabel();
+            int AFTER = code.newLabel();
+
+            binaryExpression.getFirstOperand().accept(this);
+            code.add(Opcodes.IFNE, TRUE);
+            binaryExpression.getSecondOperand().accept(this);
+            code.add(Opcodes.IFEQ, FALSE);
+            code.addLabel(TRUE);
+            code.add(Opcodes.LDC, 1);
+            code.add(Opcodes.GOTO, AFTER);
+            code.addLabel(FALSE);
+            code.add(Opcodes.LDC, 0);
+            code.addLabel(AFTER);
+            return null;
+        }
+        if (operator == BinaryOperator.assign) {
+            addAssignment(binaryExpression);
+            return null;
+        }
+
+        binaryExpression.getFirstOperand().accept(this);
+        binaryExpression.getSecondOperand().accept(this);
         if (operator == BinaryOperator.add) {
-            commands += "\niadd";
+            code.add(Opcodes.IADD);
         }
         else if (operator == BinaryOperator.sub) {
-            commands += "\nisub";
+            code.add(Opcodes.ISUB);
         }
         else if (operator == BinaryOperator.mult) {
-            commands += "\nimul";
+            code.add(Opcodes.IMUL);
         }
         else if (operator == BinaryOperator.div) {
-            commands += "\nidiv";
+            code.add(Opcodes.IDIV);
         }
         else if (operator == BinaryOperator.mod) {
-            commands += "\nirem";
+            code.add(Opcodes.IREM);
         }
         else if((operator == BinaryOperator.gt) || (operator == BinaryOperator.lt)) {
-            String TRUE = getFreshLabel();
-            String AFTER = getFreshLabel();
+            int TRUE = code.newLabel();
+            int AFTER = code.newLabel();
             if (operator == BinaryOperator.gt)
-                commands += "\nif_icmpgt " + TRUE;
+                code.add(Opcodes.IF_ICMPGT, TRUE);
             else
-                commands += "\nif_icmplt " + TRUE;
-            commands += "\nldc 0" +
-                    "\ngoto " + AFTER +
-                    "\n" + TRUE + ":" +
-                    "\nldc 1" +
-                    "\n" + AFTER + ":";
+                code.add(Opcodes.IF_ICMPLT, TRUE);
+            code.add(Opcodes.LDC, 0);
+            code.add(Opcodes.GOTO, AFTER);
+            code.addLabel(TRUE);
+            code.add(Opcodes.LDC, 1);
+            code.addLabel(AFTER);
         }
         else if((operator == BinaryOperator.eq) || (operator == BinaryOperator.neq)) {
-            String FALSE = getFreshLabel();
-            String AFTER = getFreshLabel();
-
-            Type type = binaryExpression.getFirstOperand().accept(expressionTypeChecker);
-            if (type instanceof IntType || type instanceof BoolType)
-                commands += "\nif_i";
-            else
-                commands += "\nif_a";
+            int FALSE = code.newLabel();
+            int AFTER = code.newLabel();
 
+            Type type = typeOf(binaryExpression.getFirstOperand());
+            boolean primitive = type instanceof IntType || type instanceof BoolType;
             if (operator == BinaryOperator.eq)
-                commands += "cmpne " + FALSE;
+                code.add(primitive ? Opcodes.IF_ICMPNE : Opcodes.IF_ACMPNE, FALSE);
             else
-                commands += "cmpeq " + FALSE;
+                code.add(primitive ? Opcodes.IF_ICMPEQ : Opcodes.IF_ACMPEQ, FALSE);
 
-            commands += "\nldc 1" +
-                    "\ngoto " + AFTER +
-                    "\n" + FALSE + ":" +
-                    "\nldc 0" +
-                    "\n" + AFTER + ":";
+            code.add(Opcodes.LDC, 1);
+            code.add(Opcodes.GOTO, AFTER);
+            code.addLabel(FALSE);
+            code.add(Opcodes.LDC, 0);
+            code.addLabel(AFTER);
         }
-        else if(operator == BinaryOperator.and) {
-            String TRUE = getFreshLabel();
-            String FALSE = getFreshLabel();
-            String AFTER = getFreshLabel();
-
-            commands += "\n" + binaryExpression.getFirstOperand().accept(this) +
-                    "\nifeq " + FALSE +
-                    "\n" + binaryExpression.getSecondOperand().accept(this) +
-                    "\nifeq " + FALSE +
-                    "\n" + TRUE + ":" +
-                    "\nldc 1" +
-                    "\ngoto " + AFTER +
-                    "\n" + FALSE + ":" +
-                    "\nldc 0" +
-                    "\n" + AFTER + ":";
-        }
-        else if(operator == BinaryOperator.or) {
-            String TRUE = getFreshLabel();
-            String FALSE = getFreshLabel();
-            String AFTER = getFreshLabel();
-
-            commands += "\n" + binaryExpression.getFirstOperand().accept(this) +
-                    "\nifne " + TRUE +
-                    "\n" + binaryExpression.getSecondOperand().accept(this) +
-                    "\nifeq " + FALSE +
-                    "\n" + TRUE + ":" +
-                    "\nldc 1" +
-                    "\ngoto " + AFTER +
-                    "\n" + FALSE + ":" +
-                    "\nldc 0" +
-                    "\n" + AFTER + ":";
+        return null;
+    }
+
+    //value of the right side of an assignment, lists are copied unless the value is a new list literal
+    //that nothing else refers to
+    private void addAssignedValue(Expression value, Type firstType) {
+        value.accept(this);
+        if(firstType instanceof ListType && !(value instanceof ListValue)) {
+            String listClass = listClass((ListType) firstType);
+            code.add(Opcodes.INVOKEVIRTUAL, listClass + "/copy()Lruntime/SophiaList;");
+            code.add(Opcodes.CHECKCAST, listClass);
         }
-        else if(operator == BinaryOperator.assign) {
-            commands = "";
-            Type firstType = binaryExpression.getFirstOperand().accept(expressionTypeChecker);
-            Type secondType = binaryExpression.getSecondOperand().accept(expressionTypeChecker);
-            String secondOperandCommands = binaryExpression.getSecondOperand().accept(this);
-            if(firstType instanceof ListType) {
-                secondOperandCommands = "new List\ndup\n" + secondOperandCommands;
-                secondOperandCommands += "\n" + "invokespecial List/<init>(LList;)V";
-            }
-            if(binaryExpression.getFirstOperand() instanceof Identifier) {
-                commands += secondOperandCommands +
-                        "\ndup";
-                String castCmd = getPrimitiveToClassCmd(secondType);
-                if (castCmd != null)
-                    commands += "\n" + castCmd;
-                commands += "\nastore " + slotOf(((Identifier) binaryExpression.getFirstOperand()).getName());
-            }
-            else if(binaryExpression.getFirstOperand() instanceof ListAccessByIndex) {
-                int temp = slotOf("");
-                ListAccessByIndex listAccessByIndex = (ListAccessByIndex) binaryExpression.getFirstOperand();
-                commands += listAccessByIndex.getInstance().accept(this) +
-                        "\ndup" +
-                        "\n" + listAccessByIndex.getIndex().accept(this) +
-                        "\ndup" +
-                        "\nistore " + temp +
-                        "\n" + secondOperandCommands;
-                String castPrimitiveClassCmd = getPrimitiveToClassCmd(secondType);
-                if (castPrimitiveClassCmd != null)
-                    commands += "\n" + castPrimitiveClassCmd;
-                commands += "\n" + "invokevirtual List/setElement(ILjava/lang/Object;)V" +
-                        "\niload " + temp +
-                        "\n" + "invokevirtual List/getElement(I)Ljava/lang/Object;" +
-                        "\ncheckcast " + getExpectedType(secondType);
-                castPrimitiveClassCmd = getClassToPrimitiveCmd(secondType);
-                if (castPrimitiveClassCmd != null)
-                    commands += "\n" + castPrimitiveClassCmd;
-            }
-            else if(binaryExpression.getFirstOperand() instanceof ObjectOrListMemberAccess) {
-                Expression instance = ((ObjectOrListMemberAccess) binaryExpression.getFirstOperand()).getInstance();
-                String memberName = ((ObjectOrListMemberAccess) binaryExpression.getFirstOperand()).getMemberName().getName();
-                Type instanceType = instance.accept(expressionTypeChecker);
-                if(instanceType instanceof ListType) {
-                    int i = 0;
-                    ArrayList<ListNameType> elementsTypes = ((ListType) instanceType).getElementsTypes();
-                    for (i = 0; i < elementsTypes.size(); i++) {
-                        if (memberName.equals(elementsTypes.get(i).getName().getName()))
-                            break;
-                    }
-
-                    commands += instance.accept(this) +
-                            "\ndup" +
-                            "\nldc " + i +
-                            "\n" + secondOperandCommands;
-                    String castPrimitiveClassCmd = getPrimitiveToClassCmd(secondType);
-                    if (castPrimitiveClassCmd != null)
-                        commands += "\n" + castPrimitiveClassCmd;
-                    commands += "\ninvokevirtual List/setElement(ILjava/lang/Object;)V" +
-                            "\nldc " + i +
-                            "\ninvokevirtual List/getElement(I)Ljava/lang/Object;" +
-                            "\ncheckcast " + getExpectedType(secondType);
-                    castPrimitiveClassCmd = getClassToPrimitiveCmd(secondType);
-                    if (castPrimitiveClassCmd != null)
-                        commands += "\n" + castPrimitiveClassCmd;
+    }
 
-                }
-                else if(instanceType instanceof ClassType) {
-                    commands += instance.accept(this) +
-                            "\ndup" +
-                            "\n" + secondOperandCommands;
-                    String castPrimitiveCmd = getPrimitiveToClassCmd(secondType);
-                    if (castPrimitiveCmd != null)
-                        commands += "\n" + castPrimitiveCmd;
-                    String name = ((ClassType) instanceType).getClassName().getName();
-                    commands += "\nputfield " + name + "/" + memberName + " " + makeTypeSignature(secondType) +
-                            "\ngetfield " + name + "/" + memberName + " " + makeTypeSignature(secondType);
-                    castPrimitiveCmd = getClassToPrimitiveCmd(secondType);
-                    if (castPrimitiveCmd != null)
-                        commands += "\n" + castPrimitiveCmd;
-                }
+    private void addAssignment(BinaryExpression binaryExpression) {
+        Expression value = binaryExpression.getSecondOperand();
+        Type firstType = typeOf(binaryExpression.getFirstOperand());
+        if(binaryExpression.getFirstOperand() instanceof Identifier) {
+            addAssignedValue(value, firstType);
+            code.add(Opcodes.DUP);
+            addPrimitiveToStoredCmd(firstType);
+            addStoreCmd(firstType, slotOf(((Identifier) binaryExpression.getFirstOperand()).getName()));
+        }
+        else if(binaryExpression.getFirstOperand() instanceof ListAccessByIndex) {
+            ListAccessByIndex listAccessByIndex = (ListAccessByIndex) binaryExpression.getFirstOperand();
+            addElementAssignment(listAccessByIndex.getInstance(), listAccessByIndex.getIndex(),
+                    positionOf(listAccessByIndex.getIndex()), value, firstType);
+        }
+        else if(binaryExpression.getFirstOperand() instanceof ObjectOrListMemberAccess) {
+            Expression instance = ((ObjectOrListMemberAccess) binaryExpression.getFirstOperand()).getInstance();
+            String memberName = ((ObjectOrListMemberAccess) binaryExpression.getFirstOperand()).getMemberName().getName();
+            Type instanceType = typeOf(instance);
+            if(instanceType instanceof ListType)
+                addElementAssignment(instance, null, indexOfListMember((ListType) instanceType, memberName),
+                        value, firstType);
+            else if(instanceType instanceof ClassType) {
+                instance.accept(this);
+                code.add(Opcodes.DUP);
+                addAssignedValue(value, firstType);
+                addPrimitiveToStoredCmd(firstType);
+                //the field is named with its declared type, the value may be of a subclass or null
+                String field = ((ClassType) instanceType).getClassName().getName() + "/" + memberName +
+                        " " + makeTypeSignature(firstType);
+                code.add(Opcodes.PUTFIELD, field);
+                code.add(Opcodes.GETFIELD, field);
+                addStoredToPrimitiveCmd(firstType);
             }
         }
-        return commands;
+    }
+
+    //the assigned value is left on the stack below the list and position, which the store consumes
+    private void addElementAssignment(Expression instance, Expression index, int position, Expression value, Type firstType) {
+        String listClass = listClass((ListType) typeOf(instance));
+        instance.accept(this);
+        addPositionCmd(listClass, index, position);
+        addAssignedValue(value, firstType);
+        code.add(isTuple(listClass) ? Opcodes.DUP_X1 : Opcodes.DUP_X2);
+        addElementSetCmd(listClass, position);
+    }
+
+    //++ and -- on an int element, the list and position are duplicated for the store
+    private void addElementIncrement(Expression instance, Expression index, int position, UnaryOperator operator) {
+        String listClass = listClass((ListType) typeOf(instance));
+        boolean pre = operator == UnaryOperator.preinc || operator == UnaryOperator.predec;
+        instance.accept(this);
+        addPositionCmd(listClass, index, position);
+        code.add(isTuple(listClass) ? Opcodes.DUP : Opcodes.DUP2);
+        addElementGetCmd(listClass, position, TypeFactory.INT);
+        if (pre)
+            addIncrement(operator);
+        code.add(isTuple(listClass) ? Opcodes.DUP_X1 : Opcodes.DUP_X2);
+        if (!pre)
+            addIncrement(operator);
+        addElementSetCmd(listClass, position);
+    }
+
+    //operand of ++ or -- on the stack, replaced by its new value
+    private void addIncrement(UnaryOperator operator) {
+        code.add(Opcodes.LDC, 1);
+        if (operator == UnaryOperator.preinc || operator == UnaryOperator.postinc)
+            code.add(Opcodes.IADD);
+        else
+            code.add(Opcodes.ISUB);
     }
 
     @Override
-    public String visit(UnaryExpression unaryExpression) {
+    public Void visit(UnaryExpression unaryExpression) {
         UnaryOperator operator = unaryExpression.getOperator();
-        String commands = "";
 
         if(operator == UnaryOperator.minus) {
-            commands += unaryExpression.getOperand().accept(this) + "\n";
-            commands += "ineg";
+            unaryExpression.getOperand().accept(this);
+            code.add(Opcodes.INEG);
         }
         else if(operator == UnaryOperator.not) {
-            String TRUE = getFreshLabel();
-            String AFTER = getFreshLabel();
-            commands += unaryExpression.getOperand().accept(this) + "\n";
-            commands += "ifne " + TRUE + "\n";
-            commands += "ldc 1\n";
-            commands += "goto " + AFTER + "\n";
-            commands += TRUE + ":\n";
-            commands += "ldc 0\n";
-            commands += AFTER + ":";
+            int TRUE = code.newLabel();
+            int AFTER = code.newLabel();
+            unaryExpression.getOperand().accept(this);
+            code.add(Opcodes.IFNE, TRUE);
+            code.add(Opcodes.LDC, 1);
+            code.add(Opcodes.GOTO, AFTER);
+            code.addLabel(TRUE);
+            code.add(Opcodes.LDC, 0);
+            code.addLabel(AFTER);
         }
         else if((operator == UnaryOperator.predec) || (operator == UnaryOperator.preinc)) {
-            if(unaryExpression.getOperand() instanceof Identifier) {
-                commands += unaryExpression.getOperand().accept(this) + "\n";
-                commands += "ldc 1\n";
-                if (operator == UnaryOperator.preinc)
-                    commands += "iadd\n";
-                else
-                    commands += "isub\n";
-                commands += "dup\n";
-                commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-
-                commands += "astore " + slotOf(((Identifier) unaryExpression.getOperand()).getName());
+            if(unaryExpression.getOperand() instanceof Identifier && unboxed) {
+                int slot = slotOf(((Identifier) unaryExpression.getOperand()).getName());
+                code.addIinc(slot, operator == UnaryOperator.preinc ? 1 : -1);
+                code.add(Opcodes.ILOAD, slot);
+            }
+            else if(unaryExpression.getOperand() instanceof Identifier) {
+                unaryExpression.getOperand().accept(this);
+                addIncrement(operator);
+                code.add(Opcodes.DUP);
+                addPrimitiveToClassCmd(TypeFactory.INT);
+                code.add(Opcodes.ASTORE, slotOf(((Identifier) unaryExpression.getOperand()).getName()));
             }
             else if(unaryExpression.getOperand() instanceof ListAccessByIndex) {
-                commands += ((ListAccessByIndex) unaryExpression.getOperand()).getInstance().accept(this) + "\n";
-                commands += ((ListAccessByIndex) unaryExpression.getOperand()).getIndex().accept(this) + "\n";
-
-                commands += unaryExpression.getOperand().accept(this) + "\n";
-
-                commands += "ldc 1\n";
-                if (operator == UnaryOperator.preinc)
-                    commands += "iadd\n";
-                else
-                    commands += "isub\n";
-
-                commands += "dup\n";
-                commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-                int temp = slotOf("");
-                commands += "astore " + temp + "\n";
-
-                commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-
-                commands += "invokevirtual List/setElement(ILjava/lang/Object;)V\n";
-
-                commands += "aload " + temp + "\n";
-                commands += getClassToPrimitiveCmd(new IntType());
+                ListAccessByIndex listAccessByIndex = (ListAccessByIndex) unaryExpression.getOperand();
+                addElementIncrement(listAccessByIndex.getInstance(), listAccessByIndex.getIndex(),
+                        positionOf(listAccessByIndex.getIndex()), operator);
             }
             else if(unaryExpression.getOperand() instanceof ObjectOrListMemberAccess) {
                 Expression instance = ((ObjectOrListMemberAccess) unaryExpression.getOperand()).getInstance();
-                Type memberType = unaryExpression.getOperand().accept(expressionTypeChecker);
                 String memberName = ((ObjectOrListMemberAccess) unaryExpression.getOperand()).getMemberName().getName();
-                Type instanceType = instance.accept(expressionTypeChecker);
-                if(instanceType instanceof ListType) {
-                    commands += instance.accept(this) + "\n";
-                    ArrayList<ListNameType> elementsTypes = ((ListType) instanceType).getElementsTypes();
-                    int i = 0;
-                    for (i = 0; i < elementsTypes.size(); i++){
-                        if (memberName.equals(elementsTypes.get(i).getName().getName()))
-                            break;
-                    }
-                    commands += "ldc " + i + "\n";
-
-                    commands += unaryExpression.getOperand().accept(this) + "\n";
-
-                    commands += "ldc 1\n";
-                    if (operator == UnaryOperator.preinc)
-                        commands += "iadd\n";
-                    else
-                        commands += "isub\n";
-
-                    commands += "dup\n";
-                    commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-                    int temp = slotOf("");
-                    commands += "astore " + temp + "\n";
-
-                    commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-
-                    commands += "invokevirtual List/setElement(ILjava/lang/Object;)V\n";
-
-                    commands += "aload " + temp + "\n";
-                    commands += getClassToPrimitiveCmd(new IntType());
-                }
+                Type instanceType = typeOf(instance);
+                if(instanceType instanceof ListType)
+                    addElementIncrement(instance, null, indexOfListMember((ListType) instanceType, memberName), operator);
                 else if(instanceType instanceof ClassType) {
-                    commands += instance.accept(this) + "\n";
-                    commands += unaryExpression.getOperand().accept(this) + "\n";
-
-                    commands += "ldc 1\n";
-                    if (operator == UnaryOperator.preinc)
-                        commands += "iadd\n";
-                    else
-                        commands += "isub\n";
-                    commands += "dup\n";
-                    int temp = slotOf("");
-                    commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-                    commands += "astore " + temp + "\n";
-
-                    commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-
-                    commands += "putfield " + ((ClassType) instanceType).getClassName().getName()
-                            + "/" + memberName + " " + makeTypeSignature(new IntType()) + "\n";
-
-                    commands += "aload " + temp + "\n";
-                    commands += getClassToPrimitiveCmd(new IntType());
+                    instance.accept(this);
+                    unaryExpression.getOperand().accept(this);
+                    addIncrement(operator);
+
+                    code.add(Opcodes.DUP);
+                    int temp = allocateTemp();
+                    addPrimitiveToStoredCmd(TypeFactory.INT);
+                    addStoreCmd(TypeFactory.INT, temp);
+
+                    addPrimitiveToStoredCmd(TypeFactory.INT);
+                    code.add(Opcodes.PUTFIELD, ((ClassType) instanceType).getClassName().getName()
+                            + "/" + memberName + " " + makeTypeSignature(TypeFactory.INT));
+
+                    addLoadCmd(TypeFactory.INT, temp);
+                    freeTemp(temp);
+                    addStoredToPrimitiveCmd(TypeFactory.INT);
                 }
             }
         }
         else if((operator == UnaryOperator.postdec) || (operator == UnaryOperator.postinc)) {
-            if(unaryExpression.getOperand() instanceof Identifier) {
-                commands += unaryExpression.getOperand().accept(this) + "\n";
-                commands += "dup\n";
-
-                commands += "ldc 1\n";
-                if (operator == UnaryOperator.postinc)
-                    commands += "iadd\n";
-                else
-                    commands += "isub\n";
-
-                commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-
-                commands += "astore " + slotOf(((Identifier) unaryExpression.getOperand()).getName()) + "\n";
+            if(unaryExpression.getOperand() instanceof Identifier && unboxed) {
+                int slot = slotOf(((Identifier) unaryExpression.getOperand()).getName());
+                code.add(Opcodes.ILOAD, slot);
+                code.addIinc(slot, operator == UnaryOperator.postinc ? 1 : -1);
+            }
+            else if(unaryExpression.getOperand() instanceof Identifier) {
+                unaryExpression.getOperand().accept(this);
+                code.add(Opcodes.DUP);
+                addIncrement(operator);
+                addPrimitiveToClassCmd(TypeFactory.INT);
+                code.add(Opcodes.ASTORE, slotOf(((Identifier) unaryExpression.getOperand()).getName()));
             }
             else if(unaryExpression.getOperand() instanceof ListAccessByIndex) {
-                commands += ((ListAccessByIndex) unaryExpression.getOperand()).getInstance().accept(this) + "\n";
-                commands += ((ListAccessByIndex) unaryExpression.getOperand()).getIndex().accept(this) + "\n";
-
-                commands += unaryExpression.getOperand().accept(this) + "\n";
-
-                commands += "dup\n";
-                int temp = slotOf("");
-                commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-                commands += "astore " + temp + "\n";
-
-                commands += "ldc 1\n";
-                if (operator == UnaryOperator.postinc)
-                    commands += "iadd\n";
-                else
-                    commands += "isub\n";
-
-                commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-
-                commands += "invokevirtual List/setElement(ILjava/lang/Object;)V\n";
-
-                commands += "aload " + temp + "\n";
-                commands += getClassToPrimitiveCmd(new IntType());
+                ListAccessByIndex listAccessByIndex = (ListAccessByIndex) unaryExpression.getOperand();
+                addElementIncrement(listAccessByIndex.getInstance(), listAccessByIndex.getIndex(),
+                        positionOf(listAccessByIndex.getIndex()), operator);
             }
             else if(unaryExpression.getOperand() instanceof ObjectOrListMemberAccess) {
                 Expression instance = ((ObjectOrListMemberAccess) unaryExpression.getOperand()).getInstance();
-                Type memberType = unaryExpression.getOperand().accept(expressionTypeChecker);
                 String memberName = ((ObjectOrListMemberAccess) unaryExpression.getOperand()).getMemberName().getName();
-                Type instanceType = instance.accept(expressionTypeChecker);
-                if(instanceType instanceof ListType) {
-                    commands += instance.accept(this) + "\n";
-                    ArrayList<ListNameType> elementsTypes = ((ListType) instanceType).getElementsTypes();
-                    int i = 0;
-                    for (i = 0; i < elementsTypes.size(); i++){
-                        if (memberName.equals(elementsTypes.get(i).getName().getName()))
-                            break;
-                    }
-                    commands += "ldc " + i + "\n";
-
-                    commands += unaryExpression.getOperand().accept(this) + "\n";
-                    commands += "dup\n";
-                    int temp = slotOf("");
-                    commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-                    commands += "astore " + temp + "\n";
-
-                    commands += "ldc 1\n";
-                    if (operator == UnaryOperator.postinc)
-                        commands += "iadd\n";
-                    else
-                        commands += "isub\n";
-
-                    commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-                    commands += "invokevirtual List/setElement(ILjava/lang/Object;)V\n";
-                    commands += "aload " + temp + "\n";
-                    commands += getClassToPrimitiveCmd(new IntType());
-                }
+                Type instanceType = typeOf(instance);
+                if(instanceType instanceof ListType)
+                    addElementIncrement(instance, null, indexOfListMember((ListType) instanceType, memberName), operator);
                 else if(instanceType instanceof ClassType) {
-                    commands += instance.accept(this) + "\n";
-                    commands += unaryExpression.getOperand().accept(this) + "\n";
-                    commands += "dup\n";
-                    int temp = slotOf("");
-                    commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-                    commands += "astore " + temp + "\n";
-
-
-                    commands += "ldc 1\n";
-                    if (operator == UnaryOperator.postinc)
-                        commands += "iadd\n";
-                    else
-                        commands += "isub\n";
-
-
-                    commands += getPrimitiveToClassCmd(new IntType()) + "\n";
-
-                    commands += "putfield " + ((ClassType) instanceType).getClassName().getName()
-                            + "/" + memberName + " " + makeTypeSignature(new IntType()) + "\n";
-                    commands += "aload " + temp + "\n";
-                    commands += getClassToPrimitiveCmd(new IntType());
+                    instance.accept(this);
+                    unaryExpression.getOperand().accept(this);
+                    code.add(Opcodes.DUP);
+                    int temp = allocateTemp();
+                    addPrimitiveToStoredCmd(TypeFactory.INT);
+                    addStoreCmd(TypeFactory.INT, temp);
+
+                    addIncrement(operator);
+                    addPrimitiveToStoredCmd(TypeFactory.INT);
+
+                    code.add(Opcodes.PUTFIELD, ((ClassType) instanceType).getClassName().getName()
+                            + "/" + memberName + " " + makeTypeSignature(TypeFactory.INT));
+                    addLoadCmd(TypeFactory.INT, temp);
+                    freeTemp(temp);
+                    addStoredToPrimitiveCmd(TypeFactory.INT);
                 }
             }
         }
-        return commands;
+        return null;
     }
 
     @Override
-    public String visit(ObjectOrListMemberAccess objectOrListMemberAccess) {
-        Type memberType = objectOrListMemberAccess.accept(expressionTypeChecker);
-        Type instanceType = objectOrListMemberAccess.getInstance().accept(expressionTypeChecker);
+    public Void visit(ObjectOrListMemberAccess objectOrListMemberAccess) {
+        Type memberType = typeOf(objectOrListMemberAccess);
+        Type instanceType = typeOf(objectOrListMemberAccess.getInstance());
         String memberName = objectOrListMemberAccess.getMemberName().getName();
-        String commands = "";
         if(instanceType instanceof ClassType) {
             String className = ((ClassType) instanceType).getClassName().getName();
-            try {
-                SymbolTable classSymbolTable = ((ClassSymbolTableItem) SymbolTable.root.getItem(ClassSymbolTableItem.START_KEY + className, true)).getClassSymbolTable();
-                try {
-                    classSymbolTable.getItem(FieldSymbolTableItem.START_KEY + memberName, true);
-
-                    commands += objectOrListMemberAccess.getInstance().accept(this) + "\n" +
-                            "getfield " + className + "/" + memberName + " " + makeTypeSignature(memberType) + "\n";
-                    String castPrimitiveCmd = getClassToPrimitiveCmd(memberType);
-                    if (castPrimitiveCmd != null)
-                        commands += castPrimitiveCmd;
-                } catch (ItemNotFoundException memberIsMethod) {
-                    commands += "new Fptr\n" +
-                            "dup\n" +
-                            objectOrListMemberAccess.getInstance().accept(this) + "\n" +
-                            "ldc \"" + memberName + "\"" + "\n" +
-                            "invokespecial Fptr/<init>(Ljava/lang/Object;Ljava/lang/String;)V\n";
-                }
-            } catch (ItemNotFoundException classNotFound) {
+            ClassMemberTable classTable = context.getClassTable(className);
+            if (classTable != null && classTable.hasField(memberName)) {
+                objectOrListMemberAccess.getInstance().accept(this);
+                code.add(Opcodes.GETFIELD, className + "/" + memberName + " " + makeTypeSignature(memberType));
+                addStoredToPrimitiveCmd(memberType);
+            }
+            else if (classTable != null) {
+                code.add(Opcodes.NEW, "runtime/Fptr");
+                code.add(Opcodes.DUP);
+                objectOrListMemberAccess.getInstance().accept(this);
+                code.add(Opcodes.LDC_STRING, memberName);
+                code.add(Opcodes.INVOKESPECIAL, "runtime/Fptr/<init>(Ljava/lang/Object;Ljava/lang/String;)V");
             }
         }
         else if(instanceType instanceof ListType) {
-            int i = 0;
-            ArrayList<ListNameType> elementTypes = ((ListType) instanceType).getElementsTypes();
-            for (i = 0; i < elementTypes.size(); i++){
-                if (memberName.equals(elementTypes.get(i).getName().getName()))
-                    break;
-            }
-            commands += objectOrListMemberAccess.getInstance().accept(this) + "\n" +
-                    "ldc " + i + "\n" +
-                    "invokevirtual List/getElement(I)Ljava/lang/Object;\n" +
-                    "checkcast " + getExpectedType(memberType) + "\n";
-            String castPrimitiveCmd = getClassToPrimitiveCmd(memberType);
-            if (castPrimitiveCmd != null)
-                commands += castPrimitiveCmd;
+            String listClass = listClass((ListType) instanceType);
+            int position = indexOfListMember((ListType) instanceType, memberName);
+            objectOrListMemberAccess.getInstance().accept(this);
+            addPositionCmd(listClass, null, position);
+            addElementGetCmd(listClass, position, memberType);
         }
-        return commands;
+        return null;
     }
 
     @Override
-    public String visit(Identifier identifier) {
-        String commands = "";
-        commands += "aload " + slotOf(identifier.getName()) + "\n";
-        String castPrimitiveCmd = getClassToPrimitiveCmd(identifier.accept(expressionTypeChecker));
-        if (castPrimitiveCmd != null)
-            commands += castPrimitiveCmd;
-        return commands;
+    public Void visit(Identifier identifier) {
+        Type type = typeOf(identifier);
+        addLoadCmd(type, slotOf(identifier.getName()));
+        addStoredToPrimitiveCmd(type);
+        return null;
     }
 
     @Override
-    public String visit(ListAccessByIndex listAccessByIndex) {
-        String commands = "";
-        commands += listAccessByIndex.getInstance().accept(this) + "\n" +
-                listAccessByIndex.getIndex().accept(this) + "\n" +
-                "invokevirtual List/getElement(I)Ljava/lang/Object;\n";
+    public Void visit(ListAccessByIndex listAccessByIndex) {
+        String listClass = listClass((ListType) typeOf(listAccessByIndex.getInstance()));
+        int position = positionOf(listAccessByIndex.getIndex());
+        listAccessByIndex.getInstance().accept(this);
+        addPositionCmd(listClass, listAccessByIndex.getIndex(), position);
+        addElementGetCmd(listClass, position, typeOf(listAccessByIndex));
+        return null;
+    }
 
-        commands += "checkcast " + getExpectedType(listAccessByIndex.accept(expressionTypeChecker)) + "\n";
+    //the method a call on a member access of an object runs, null when the callee is a function pointer value
+    private MethodSymbolTableItem directCallTarget(MethodCall methodCall) {
+        if (!(methodCall.getInstance() instanceof ObjectOrListMemberAccess))
+            return null;
+        ObjectOrListMemberAccess callee = (ObjectOrListMemberAccess) methodCall.getInstance();
+        Type instanceType = typeOf(callee.getInstance());
+        if (!(instanceType instanceof ClassType))
+            return null;
+        ClassMemberTable classTable = context.getClassTable(((ClassType) instanceType).getClassName().getName());
+        String memberName = callee.getMemberName().getName();
+        if (classTable == null || classTable.hasField(memberName))
+            return null;
+        MethodSymbolTableItem target = classTable.findMethod(memberName);
+        if (target == null || target.getMethodDeclaration() instanceof ConstructorDeclaration)
+            return null;
+        return target;
+    }
 
-        String castPrimitiveCmd = getClassToPrimitiveCmd(listAccessByIndex.accept(expressionTypeChecker));
-        if (castPrimitiveCmd != null)
-            commands += castPrimitiveCmd;
-        return commands;
+    //typed invokevirtual on the static class of the receiver, no Fptr and no argument list
+    private void addDirectCall(MethodCall methodCall, MethodSymbolTableItem target) {
+        ObjectOrListMemberAccess callee = (ObjectOrListMemberAccess) methodCall.getInstance();
+        String className = ((ClassType) typeOf(callee.getInstance())).getClassName().getName();
+        callee.getInstance().accept(this);
+        String descriptor = "(";
+        ArrayList<Expression> args = methodCall.getArgs();
+        ArrayList<Type> argTypes = target.getArgTypes();
+        for (int i = 0; i < args.size(); i++) {
+            args.get(i).accept(this);
+            addPrimitiveToStoredCmd(argTypes.get(i));
+            descriptor += makeTypeSignature(argTypes.get(i));
+        }
+        descriptor += ")" + makeTypeSignature(target.getReturnType());
+        code.add(Opcodes.INVOKEVIRTUAL, className + "/" + callee.getMemberName().getName() + descriptor);
+        addStoredToPrimitiveCmd(target.getReturnType());
     }
 
     @Override
-    public String visit(MethodCall methodCall) {
-        String commands = "";
-        commands += methodCall.getInstance().accept(this) + "\n" +
-                "new java/util/ArrayList\n" +
-                "dup\n" +
-                "invokespecial java/util/ArrayList/<init>()V\n";
-        for (Expression arg : methodCall.getArgs()) {
-            commands += "dup\n" +
-                    arg.accept(this) + "\n";
-
-            Type type = arg.accept(expressionTypeChecker);
-            String castPrimitiveClassCmd = getPrimitiveToClassCmd(type);
-            if (castPrimitiveClassCmd != null)
-                commands += castPrimitiveClassCmd + "\n";
-            commands += "invokevirtual java/util/ArrayList/add(Ljava/lang/Object;)Z\n" +
-                    "pop\n";
+    public Void visit(MethodCall methodCall) {
+        MethodSymbolTableItem target = directCallTarget(methodCall);
+        if (target != null) {
+            addDirectCall(methodCall, target);
+            return null;
+        }
+        //class files call through an inline caching call site; jasmin has no invokedynamic, there up to
+        //four arguments are passed as they are and longer argument lists in an array
+        methodCall.getInstance().accept(this);
+        ArrayList<Expression> args = methodCall.getArgs();
+        if (classFiles) {
+            String descriptor = "(Lruntime/Fptr;";
+            for (Expression arg : args) {
+                arg.accept(this);
+                addPrimitiveToClassCmd(typeOf(arg));
+                descriptor += "Ljava/lang/Object;";
+            }
+            code.add(Opcodes.INVOKEDYNAMIC, "call" + descriptor + ")Ljava/lang/Object; " + FPTR_BOOTSTRAP);
+        }
+        else if (args.size() <= MAX_FPTR_ARITY) {
+            String descriptor = "(";
+            for (Expression arg : args) {
+                arg.accept(this);
+                addPrimitiveToClassCmd(typeOf(arg));
+                descriptor += "Ljava/lang/Object;";
+            }
+            code.add(Opcodes.INVOKEVIRTUAL, "runtime/Fptr/invoke" + args.size() + descriptor + ")Ljava/lang/Object;");
+        }
+        else {
+            code.add(Opcodes.LDC, args.size());
+            code.add(Opcodes.ANEWARRAY, "java/lang/Object");
+            for (int i = 0; i < args.size(); i++) {
+                code.add(Opcodes.DUP);
+                code.add(Opcodes.LDC, i);
+                args.get(i).accept(this);
+                addPrimitiveToClassCmd(typeOf(args.get(i)));
+                code.add(Opcodes.AASTORE);
+            }
+            code.add(Opcodes.INVOKEVIRTUAL, "runtime/Fptr/invoke([Ljava/lang/Object;)Ljava/lang/Object;");
         }
-        commands += "invokevirtual Fptr/invoke(Ljava/util/ArrayList;)Ljava/lang/Object;\n";
 
-        Type returnType = methodCall.accept(expressionTypeChecker);
+        Type returnType = typeOf(methodCall);
         if (!(returnType instanceof NullType))
-            commands += "checkcast " + getExpectedType(returnType) + "\n";
-
-        String primitiveCastCmd = getClassToPrimitiveCmd(returnType);
-        if (primitiveCastCmd != null)
-            commands += "\n" + primitiveCastCmd;
-
-        return commands;
+            code.add(Opcodes.CHECKCAST, getExpectedType(returnType));
+        addClassToPrimitiveCmd(returnType);
+        return null;
     }
 
     @Override
-    public String visit(NewClassInstance newClassInstance) {
-        String commands = "";
-        commands += "new " + newClassInstance.getClassType().getClassName().getName() + "\n" +
-                "dup\n";
-        for (Expression arg : newClassInstance.getArgs()) {
-            commands += arg.accept(this) + "\n";
-            Type type = arg.accept(expressionTypeChecker);
-            String castPrimitiveClassCmd = getPrimitiveToClassCmd(type);
-            if (castPrimitiveClassCmd != null)
-                commands += castPrimitiveClassCmd + "\n";
-        }
-        commands += "invokespecial " + newClassInstance.getClassType().getClassName().getName() + "/<init>(";
+    public Void visit(NewClassInstance newClassInstance) {
+        String className = newClassInstance.getClassType().getClassName().getName();
+        code.add(Opcodes.NEW, className);
+        code.add(Opcodes.DUP);
+        String signature = className + "/<init>(";
         for (Expression arg : newClassInstance.getArgs()) {
-            Type type = arg.accept(expressionTypeChecker);
-            commands += makeTypeSignature(type);
+            arg.accept(this);
+            Type type = typeOf(arg);
+            addPrimitiveToStoredCmd(type);
+            signature += makeTypeSignature(type);
         }
-        commands += ")V\n";
-
-        return commands;
+        code.add(Opcodes.INVOKESPECIAL, signature + ")V");
+        return null;
     }
 
     @Override
-    public String visit(ThisClass thisClass) {
-        String commands = "aload_0";
-        return commands;
+    public Void visit(ThisClass thisClass) {
+        code.add(Opcodes.ALOAD, 0);
+        return null;
     }
 
     @Override
-    public String visit(ListValue listValue) {
-        String commands = "";
-        commands += "new List\n" +
-                "dup\n" +
-                "new java/util/ArrayList\n" +
-                "dup\n" +
-                "invokespecial java/util/ArrayList/<init>()V\n";
-        for (Expression element : listValue.getElements()) {
-            Type type = element.accept(expressionTypeChecker);
-            commands += "\ndup\n" +
-                    element.accept(this) + "\n";
-            String castPrimitiveClassCmd = getPrimitiveToClassCmd(type);
-            if (castPrimitiveClassCmd != null)
-                commands += castPrimitiveClassCmd + "\n";
-            commands += "invokevirtual java/util/ArrayList/add(Ljava/lang/Object;)Z\n" +
-                    "pop\n";
-        }
-        commands += "invokespecial List/<init>(Ljava/util/ArrayList;)V";
-        return commands;
+    public Void visit(ListValue listValue) {
+        addNewListCmd((ListType) typeOf(listValue), listValue.getElements());
+        return null;
     }
 
     @Override
-    public String visit(NullValue nullValue) {
-        String commands = "aconst_null";
-        return commands;
+    public Void visit(NullValue nullValue) {
+        code.add(Opcodes.ACONST_NULL);
+        return null;
     }
 
     @Override
-    public String visit(IntValue intValue) {
-        String commands = "";
-        commands += "ldc " + intValue.getConstant();
-        return commands;
+    public Void visit(IntValue intValue) {
+        code.add(Opcodes.LDC, intValue.getConstant());
+        return null;
     }
 
     @Override
-    public String visit(BoolValue boolValue) {
-        String commands = "";
+    public Void visit(BoolValue boolValue) {
         if (boolValue.getConstant())
-            commands += "ldc 1";
+            code.add(Opcodes.LDC, 1);
         else
-            commands += "ldc 0";
-        return commands;
+            code.add(Opcodes.LDC, 0);
+        return null;
     }
 
     @Override
-    public String visit(StringValue stringValue) {
-        String commands = "";
-        commands += "ldc \"" + stringValue.getConstant() + "\"";
-        return commands;
+    public Void visit(StringValue stringValue) {
+        code.add(Opcodes.LDC_STRING, stringValue.getConstant());
+        return null;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,119 @@
+package main.visitor.codeGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+//instructions of one method body in emission order. opcodes and operands are kept in parallel int
+//arrays: labels are int ids and reference operands are indices into a per-buffer string pool, so
+//appending is amortized O(1) and nothing is copied until the body is serialized
+public class InstructionBuffer {
+    private int[] opcodes = new int[64];
+    private int[] operands = new int[64];
+    private int[] secondOperands = new int[64];
+    private int size;
+    private int labelCounter;
+    private ArrayList<String> strings = new ArrayList<>();
+    private Map<String, Integer> stringIndices = new HashMap<>();
+
+    //starts a new method body, the arrays are kept for reuse
+    public void reset() {
+        size = 0;
+        labelCounter = 0;
+        strings.clear();
+        stringIndices.clear();
+    }
+
+    public int newLabel() {
+        return labelCounter++;
+    }
+
+    public void add(int opcode) {
+        append(opcode, 0, 0);
+    }
+
+    public void add(int opcode, int operand) {
+        append(opcode, operand, 0);
+    }
+
+    public void add(int opcode, String operand) {
+        Integer index = stringIndices.get(operand);
+        if (index == null) {
+            index = strings.size();
+            strings.add(operand);
+            stringIndices.put(operand, index);
+        }
+        append(opcode, index, 0);
+    }
+
+    public void addLabel(int label) {
+        append(Opcodes.LABEL, label, 0);
+    }
+
+    public void addIinc(int slot, int increment) {
+        append(Opcodes.IINC, slot, increment);
+    }
+
+    private void append(int opcode, int operand, int secondOperand) {
+        if (size == opcodes.length) {
+            opcodes = Arrays.copyOf(opcodes, size * 2);
+            operands = Arrays.copyOf(operands, size * 2);
+            secondOperands = Arrays.copyOf(secondOperands, size * 2);
+        }
+        opcodes[size] = opcode;
+        operands[size] = operand;
+        secondOperands[size] = secondOperand;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getOpcode(int index) {
+        return opcodes[index];
+    }
+
+    public int getOperand(int index) {
+        return operands[index];
+    }
+
+    public int getSecondOperand(int index) {
+        return secondOperands[index];
+    }
+
+    public String getString(int index) {
+        return strings.get(index);
+    }
+
+    //jasmin text of the body, one instruction per line
+    public void appendTo(StringBuilder text) {
+        text.ensureCapacity(text.length() + size * 24);
+        for (int i = 0; i < size; i++) {
+            int opcode = opcodes[i];
+            if (opcode == Opcodes.LABEL) {
+                text.append("\tLABEL_").append(operands[i]).append(":\n");
+                continue;
+            }
+            text.append("\t\t").append(Opcodes.nameOf(opcode));
+            switch (Opcodes.operandKindOf(opcode)) {
+                case Opcodes.INT_OPERAND:
+                    text.append(' ').append(operands[i]);
+                    if (opcode == Opcodes.IINC)
+                        text.append(' ').append(secondOperands[i]);
+                    break;
+                case Opcodes.LABEL_OPERAND:
+                    text.append(" LABEL_").append(operands[i]);
+                    break;
+                case Opcodes.STRING_OPERAND:
+                    if (opcode == Opcodes.LDC_STRING)
+                        text.append(" \"").append(strings.get(operands[i])).append('"');
+                    else
+                        text.append(' ').append(strings.get(operands[i]));
+                    break;
+            }
+            text.append('\n');
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package main.visitor.codeGenerator;
+
+import main.visitor.codeGenerator.classFile.FrameAnalyzer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+//jasmin source of a class, assembled into class files by a separate jasmin run
+public class JasminWriter implements ClassWriter {
+    private final Map<String, String> superClasses;
+    private StringBuilder text = new StringBuilder();
+    private String className;
+
+    public JasminWriter(Map<String, String> superClasses) {
+        this.superClasses = superClasses;
+    }
+
+    @Override
+    public void beginClass(String name, String superName) {
+        className = name;
+        text.append(".class public ").append(name).append('\n');
+        text.append(".super ").append(superName).append('\n');
+    }
+
+    @Override
+    public void addField(String name, String descriptor) {
+        text.append(".field ").append(name).append(' ').append(descriptor).append('\n');
+    }
+
+    @Override
+    public void addMethod(String name, String descriptor, boolean isStatic, InstructionBuffer code) {
+        text.append(isStatic ? ".method public static " : ".method public ").append(name).append(descriptor).append('\n');
+        //exact limits keep interpreter frames small, deep recursion runs out of stack much later
+        FrameAnalyzer frameAnalyzer = new FrameAnalyzer(code, className, superClasses);
+        frameAnalyzer.analyze(isStatic, name.equals("<init>"), descriptor);
+        text.append(".limit stack ").append(frameAnalyzer.getMaxStack()).append('\n');
+        text.append(".limit locals ").append(frameAnalyzer.getMaxLocals()).append('\n');
+        code.appendTo(text);
+        text.append(".end method\n");
+    }
+
+    @Override
+    public String getFileName(String className) {
+        return className + ".j";
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,136 @@
+package main.visitor.codeGenerator;
+
+//jvm instructions used by the code generator, numbered as in the class file format
+public class Opcodes {
+    public static final int ACONST_NULL = 1;
+    public static final int LDC = 18;
+    public static final int ILOAD = 21;
+    public static final int ALOAD = 25;
+    public static final int IALOAD = 46;
+    public static final int AALOAD = 50;
+    public static final int BALOAD = 51;
+    public static final int ISTORE = 54;
+    public static final int ASTORE = 58;
+    public static final int AASTORE = 83;
+    public static final int POP = 87;
+    public static final int DUP = 89;
+    public static final int DUP_X1 = 90;
+    public static final int DUP_X2 = 91;
+    public static final int DUP2 = 92;
+    public static final int IADD = 96;
+    public static final int ISUB = 100;
+    public static final int IMUL = 104;
+    public static final int IDIV = 108;
+    public static final int IREM = 112;
+    public static final int INEG = 116;
+    public static final int IINC = 132;
+    public static final int IFEQ = 153;
+    public static final int IFNE = 154;
+    public static final int IF_ICMPEQ = 159;
+    public static final int IF_ICMPNE = 160;
+    public static final int IF_ICMPLT = 161;
+    public static final int IF_ICMPGE = 162;
+    public static final int IF_ICMPGT = 163;
+    public static final int IF_ACMPEQ = 165;
+    public static final int IF_ACMPNE = 166;
+    public static final int GOTO = 167;
+    public static final int IRETURN = 172;
+    public static final int ARETURN = 176;
+    public static final int RETURN = 177;
+    public static final int GETSTATIC = 178;
+    public static final int GETFIELD = 180;
+    public static final int PUTFIELD = 181;
+    public static final int INVOKEVIRTUAL = 182;
+    public static final int INVOKESPECIAL = 183;
+    public static final int INVOKESTATIC = 184;
+    public static final int INVOKEDYNAMIC = 186;
+    public static final int NEW = 187;
+    public static final int ANEWARRAY = 189;
+    public static final int ARRAYLENGTH = 190;
+    public static final int ATHROW = 191;
+    public static final int CHECKCAST = 192;
+    public static final int INSTANCEOF = 193;
+
+    //pseudo instructions, they only exist inside an InstructionBuffer
+    public static final int LABEL = -1;
+    public static final int LDC_STRING = -2;
+
+    //what the operand of an instruction holds
+    public static final int NO_OPERAND = 0;
+    public static final int INT_OPERAND = 1;
+    public static final int LABEL_OPERAND = 2;
+    public static final int STRING_OPERAND = 3;
+
+    private static final String[] names = new String[256];
+    private static final int[] operandKinds = new int[256];
+
+    static {
+        define(ACONST_NULL, "aconst_null", NO_OPERAND);
+        define(LDC, "ldc", INT_OPERAND);
+        define(ILOAD, "iload", INT_OPERAND);
+        define(ALOAD, "aload", INT_OPERAND);
+        define(IALOAD, "iaload", NO_OPERAND);
+        define(AALOAD, "aaload", NO_OPERAND);
+        define(BALOAD, "baload", NO_OPERAND);
+        define(ISTORE, "istore", INT_OPERAND);
+        define(ASTORE, "astore", INT_OPERAND);
+        define(AASTORE, "aastore", NO_OPERAND);
+        define(POP, "pop", NO_OPERAND);
+        define(DUP, "dup", NO_OPERAND);
+        define(DUP_X1, "dup_x1", NO_OPERAND);
+        define(DUP_X2, "dup_x2", NO_OPERAND);
+        define(DUP2, "dup2", NO_OPERAND);
+        define(IADD, "iadd", NO_OPERAND);
+        define(ISUB, "isub", NO_OPERAND);
+        define(IMUL, "imul", NO_OPERAND);
+        define(IDIV, "idiv", NO_OPERAND);
+        define(IREM, "irem", NO_OPERAND);
+        define(INEG, "ineg", NO_OPERAND);
+        define(IINC, "iinc", INT_OPERAND);
+        define(IFEQ, "ifeq", LABEL_OPERAND);
+        define(IFNE, "ifne", LABEL_OPERAND);
+        define(IF_ICMPEQ, "if_icmpeq", LABEL_OPERAND);
+        define(IF_ICMPNE, "if_icmpne", LABEL_OPERAND);
+        define(IF_ICMPLT, "if_icmplt", LABEL_OPERAND);
+        define(IF_ICMPGE, "if_icmpge", LABEL_OPERAND);
+        define(IF_ICMPGT, "if_icmpgt", LABEL_OPERAND);
+        define(IF_ACMPEQ, "if_acmpeq", LABEL_OPERAND);
+        define(IF_ACMPNE, "if_acmpne", LABEL_OPERAND);
+        define(GOTO, "goto", LABEL_OPERAND);
+        define(IRETURN, "ireturn", NO_OPERAND);
+        define(ARETURN, "areturn", NO_OPERAND);
+        define(RETURN, "return", NO_OPERAND);
+        define(GETSTATIC, "getstatic", STRING_OPERAND);
+        define(GETFIELD, "getfield", STRING_OPERAND);
+        define(PUTFIELD, "putfield", STRING_OPERAND);
+        define(INVOKEVIRTUAL, "invokevirtual", STRING_OPERAND);
+        define(INVOKESPECIAL, "invokespecial", STRING_OPERAND);
+        define(INVOKESTATIC, "invokestatic", STRING_OPERAND);
+        define(INVOKEDYNAMIC, "invokedynamic", STRING_OPERAND);
+        define(NEW, "new", STRING_OPERAND);
+        define(ANEWARRAY, "anewarray", STRING_OPERAND);
+        define(ARRAYLENGTH, "arraylength", NO_OPERAND);
+        define(ATHROW, "athrow", NO_OPERAND);
+        define(CHECKCAST, "checkcast", STRING_OPERAND);
+        define(INSTANCEOF, "instanceof", STRING_OPERAND);
+    }
+
+    private static void define(int opcode, String name, int operandKind) {
+        names[opcode] = name;
+        operandKinds[opcode] = operandKind;
+    }
+
+    public static String nameOf(int opcode) {
+        if (opcode == LDC_STRING)
+            return "ldc";
+        return opcode < 0 ? null : names[opcode];
+    }
+
+    public static int operandKindOf(int opcode) {
+        if (opcode == LABEL)
+            return LABEL_OPERAND;
+        if (opcode == LDC_STRING)
+            return STRING_OPERAND;
+        return operandKinds[opcode];
+    }
+}
@@ -0,0 +1,20 @@
+package main.visitor.codeGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+//the classes generated code relies on; tuple lists are generated with the program, everything else
+//is copied from the compiler
+public class RuntimeClasses {
+    //the classes of the runtime package are part of the compiler, compiled programs get copies of them
+    public static final String[] RUNTIME_PACKAGE = {"runtime/Fptr", "runtime/Fptr$Targets", "runtime/FptrCallSite",
+            "runtime/SophiaList", "runtime/IntList", "runtime/BoolList", "runtime/ObjectList"};
+
+    public static byte[] runtimeClass(String name) throws IOException {
+        try (InputStream in = RuntimeClasses.class.getClassLoader().getResourceAsStream(name + ".class")) {
+            if (in == null)
+                throw new IOException("missing runtime class " + name);
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package main.visitor.codeGenerator.classFile;
+
+import main.visitor.codeGenerator.ClassWriter;
+import main.visitor.codeGenerator.InstructionBuffer;
+import main.visitor.codeGenerator.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+//writes a class file directly: version 52, so the split verifier checks methods against the
+//StackMapTable frames written here. unreachable instructions are left out, which keeps the
+//frames simple since every remaining instruction after a jump is itself a jump target
+public class ClassFileWriter implements ClassWriter {
+    private static final int MAJOR_VERSION = 52;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int WIDE = 196;
+
+    private final Map<String, String> superClasses;
+    private ConstantPool constantPool = new ConstantPool();
+    private String className;
+    private int thisClass;
+    private int superClass;
+    private ByteArrayOutputStream fields = new ByteArrayOutputStream();
+    private int fieldCount;
+    private ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private int methodCount;
+
+    public ClassFileWriter(Map<String, String> superClasses) {
+        this.superClasses = superClasses;
+    }
+
+    @Override
+    public void beginClass(String name, String superName) {
+        className = name;
+        thisClass = constantPool.classRef(name);
+        superClass = constantPool.classRef(superName);
+    }
+
+    @Override
+    public void addField(String name, String descriptor) {
+        DataOutputStream out = new DataOutputStream(fields);
+        try {
+            out.writeShort(0);
+            out.writeShort(constantPool.utf8(name));
+            out.writeShort(constantPool.utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        fieldCount++;
+    }
+
+    @Override
+    public void addMethod(String name, String descriptor, boolean isStatic, InstructionBuffer code) {
+        FrameAnalyzer frameAnalyzer = new FrameAnalyzer(code, className, superClasses);
+        frameAnalyzer.analyze(isStatic, name.equals("<init>"), descriptor);
+
+        int[] offsets = layout(code, frameAnalyzer);
+        ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream frameBytes = new ByteArrayOutputStream();
+        int frameCount;
+        try {
+            writeCode(code, frameAnalyzer, offsets, new DataOutputStream(codeBytes));
+            frameCount = writeFrames(code, frameAnalyzer, offsets, new DataOutputStream(frameBytes));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        if (codeBytes.size() > 0xFFFF)
+            throw new IllegalStateException("method " + className + "." + name + " is too large");
+
+        DataOutputStream out = new DataOutputStream(methods);
+        try {
+            out.writeShort(ACC_PUBLIC | (isStatic ? ACC_STATIC : 0));
+            out.writeShort(constantPool.utf8(name));
+            out.writeShort(constantPool.utf8(descriptor));
+            out.writeShort(1);
+
+            int stackMapLength = frameCount > 0 ? 2 + 4 + 2 + frameBytes.size() : 0;
+            out.writeShort(constantPool.utf8("Code"));
+            out.writeInt(2 + 2 + 4 + codeBytes.size() + 2 + 2 + stackMapLength);
+            out.writeShort(frameAnalyzer.getMaxStack());
+            out.writeShort(frameAnalyzer.getMaxLocals());
+            out.writeInt(codeBytes.size());
+            codeBytes.writeTo(out);
+            out.writeShort(0);
+            if (frameCount > 0) {
+                out.writeShort(1);
+                out.writeShort(constantPool.utf8("StackMapTable"));
+                out.writeInt(2 + frameBytes.size());
+                out.writeShort(frameCount);
+                frameBytes.writeTo(out);
+            }
+            else
+                out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methodCount++;
+    }
+
+    //byte offset of every instruction; a label gets the offset of the instruction after it
+    private int[] layout(InstructionBuffer code, FrameAnalyzer frameAnalyzer) {
+        int[] offsets = new int[code.size() + 1];
+        int offset = 0;
+        for (int i = 0; i < code.size(); i++) {
+            offsets[i] = offset;
+            if (code.getOpcode(i) != Opcodes.LABEL && frameAnalyzer.isReachable(i))
+                offset += sizeOf(code, i);
+        }
+        offsets[code.size()] = offset;
+        return offsets;
+    }
+
+    private int sizeOf(InstructionBuffer code, int index) {
+        int opcode = code.getOpcode(index);
+        int operand = code.getOperand(index);
+        switch (opcode) {
+            case Opcodes.LDC:
+                if (operand >= -1 && operand <= 5)
+                    return 1;
+                if (operand >= Byte.MIN_VALUE && operand <= Byte.MAX_VALUE)
+                    return 2;
+                if (operand >= Short.MIN_VALUE && operand <= Short.MAX_VALUE)
+                    return 3;
+                return constantPool.integer(operand) < 256 ? 2 : 3;
+            case Opcodes.LDC_STRING:
+                return constantPool.string(unescape(code.getString(operand))) < 256 ? 2 : 3;
+            case Opcodes.ILOAD:
+            case Opcodes.ALOAD:
+            case Opcodes.ISTORE:
+            case Opcodes.ASTORE:
+                return operand <= 3 ? 1 : operand <= 255 ? 2 : 4;
+            case Opcodes.IINC:
+                int increment = code.getSecondOperand(index);
+                return operand <= 255 && increment >= Byte.MIN_VALUE && increment <= Byte.MAX_VALUE ? 3 : 6;
+            case Opcodes.INVOKEDYNAMIC:
+                return 5;
+        }
+        switch (Opcodes.operandKindOf(opcode)) {
+            case Opcodes.LABEL_OPERAND:
+            case Opcodes.STRING_OPERAND:
+                return 3;
+            default:
+                return 1;
+        }
+    }
+
+    private void writeCode(InstructionBuffer code, FrameAnalyzer frameAnalyzer, int[] offsets,
+                           DataOutputStream out) throws IOException {
+        for (int i = 0; i < code.size(); i++) {
+            int opcode = code.getOpcode(i);
+            if (opcode == Opcodes.LABEL || !frameAnalyzer.isReachable(i))
+                continue;
+            int operand = code.getOperand(i);
+            int size = sizeOf(code, i);
+            switch (opcode) {
+                case Opcodes.LDC:
+                    if (size == 1)
+                        out.writeByte(3 + operand);
+                    else if (operand >= Byte.MIN_VALUE && operand <= Byte.MAX_VALUE) {
+                        out.writeByte(16);
+                        out.writeByte(operand);
+                    }
+                    else if (operand >= Short.MIN_VALUE && operand <= Short.MAX_VALUE) {
+                        out.writeByte(17);
+                        out.writeShort(operand);
+                    }
+                    else
+                        writeLdc(out, constantPool.integer(operand), size);
+                    continue;
+                case Opcodes.LDC_STRING:
+                    writeLdc(out, constantPool.string(unescape(code.getString(operand))), size);
+                    continue;
+                case Opcodes.ILOAD:
+                case Opcodes.ALOAD:
+                case Opcodes.ISTORE:
+                case Opcodes.ASTORE:
+                    writeLocalAccess(out, opcode, operand, size);
+                    continue;
+                case Opcodes.IINC:
+                    if (size == 3) {
+                        out.writeByte(opcode);
+                        out.writeByte(operand);
+                        out.writeByte(code.getSecondOperand(i));
+                    }
+                    else {
+                        out.writeByte(WIDE);
+                        out.writeByte(opcode);
+                        out.writeShort(operand);
+                        out.writeShort(code.getSecondOperand(i));
+                    }
+                    continue;
+            }
+            out.writeByte(opcode);
+            switch (Opcodes.operandKindOf(opcode)) {
+                case Opcodes.LABEL_OPERAND:
+                    int jump = offsets[frameAnalyzer.getLabelIndex(operand)] - offsets[i];
+                    if (jump < Short.MIN_VALUE || jump > Short.MAX_VALUE)
+                        throw new IllegalStateException("jump too far in " + className);
+                    out.writeShort(jump);
+                    break;
+                case Opcodes.STRING_OPERAND:
+                    out.writeShort(constantOf(opcode, code.getString(operand)));
+                    if (opcode == Opcodes.INVOKEDYNAMIC)
+                        out.writeShort(0);
+                    break;
+            }
+        }
+    }
+
+    //string constants keep the escapes of the source, which jasmin resolves when it assembles
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0)
+            return value;
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 == value.length()) {
+                result.append(c);
+                continue;
+            }
+            char escaped = value.charAt(++i);
+            switch (escaped) {
+                case 'n': result.append('\n'); break;
+                case 't': result.append('\t'); break;
+                case 'r': result.append('\r'); break;
+                case 'b': result.append('\b'); break;
+                case 'f': result.append('\f'); break;
+                default: result.append(escaped);
+            }
+        }
+        return result.toString();
+    }
+
+    private void writeLdc(DataOutputStream out, int index, int size) throws IOException {
+        if (size == 2) {
+            out.writeByte(18);
+            out.writeByte(index);
+        }
+        else {
+            out.writeByte(19);
+            out.writeShort(index);
+        }
+    }
+
+    //xload_n and xstore_n come in groups of four after iload_0, aload_0, istore_0 and astore_0
+    private void writeLocalAccess(DataOutputStream out, int opcode, int slot, int size) throws IOException {
+        if (size == 1) {
+            int first = opcode == Opcodes.ILOAD ? 26 : opcode == Opcodes.ALOAD ? 42 : opcode == Opcodes.ISTORE ? 59 : 75;
+            out.writeByte(first + slot);
+        }
+        else if (size == 2) {
+            out.writeByte(opcode);
+            out.writeByte(slot);
+        }
+        else {
+            out.writeByte(WIDE);
+            out.writeByte(opcode);
+            out.writeShort(slot);
+        }
+    }
+
+    private int constantOf(int opcode, String reference) {
+        switch (opcode) {
+            case Opcodes.GETSTATIC:
+            case Opcodes.GETFIELD:
+            case Opcodes.PUTFIELD:
+                return constantPool.fieldRef(FrameAnalyzer.fieldOwner(reference),
+                        FrameAnalyzer.fieldName(reference), FrameAnalyzer.fieldDescriptor(reference));
+            case Opcodes.INVOKEVIRTUAL:
+            case Opcodes.INVOKESPECIAL:
+            case Opcodes.INVOKESTATIC:
+                return constantPool.methodRef(FrameAnalyzer.methodOwner(reference),
+                        FrameAnalyzer.methodName(reference), FrameAnalyzer.methodDescriptor(reference));
+            case Opcodes.INVOKEDYNAMIC:
+                String bootstrap = FrameAnalyzer.dynamicBootstrap(reference);
+                return constantPool.invokeDynamic(FrameAnalyzer.dynamicName(reference),
+                        FrameAnalyzer.dynamicDescriptor(reference), FrameAnalyzer.methodOwner(bootstrap),
+                        FrameAnalyzer.methodName(bootstrap), FrameAnalyzer.methodDescriptor(bootstrap));
+            default:
+                return constantPool.classRef(reference);
+        }
+    }
+
+    //every frame is written as a full_frame
+    private int writeFrames(InstructionBuffer code, FrameAnalyzer frameAnalyzer, int[] offsets,
+                            DataOutputStream out) throws IOException {
+        int frameCount = 0;
+        int previousOffset = -1;
+        for (int i = 0; i < code.size(); i++) {
+            if (code.getOpcode(i) == Opcodes.LABEL || !frameAnalyzer.isReachable(i) || !frameAnalyzer.needsFrame(i))
+                continue;
+            out.writeByte(255);
+            out.writeShort(offsets[i] - previousOffset - 1);
+            previousOffset = offsets[i];
+
+            String[] locals = frameAnalyzer.getLocals(i);
+            int localCount = locals.length;
+            while (localCount > 0 && locals[localCount - 1].equals(FrameAnalyzer.TOP))
+                localCount--;
+            out.writeShort(localCount);
+            for (int j = 0; j < localCount; j++)
+                writeVerificationType(out, locals[j], offsets);
+            String[] stack = frameAnalyzer.getStack(i);
+            out.writeShort(stack.length);
+            for (String type : stack)
+                writeVerificationType(out, type, offsets);
+            frameCount++;
+        }
+        return frameCount;
+    }
+
+    private void writeVerificationType(DataOutputStream out, String type, int[] offsets) throws IOException {
+        if (type.equals(FrameAnalyzer.TOP))
+            out.writeByte(0);
+        else if (type.equals(FrameAnalyzer.INT))
+            out.writeByte(1);
+        else if (type.equals(FrameAnalyzer.NULL))
+            out.writeByte(5);
+        else if (type.equals(FrameAnalyzer.UNINITIALIZED_THIS))
+            out.writeByte(6);
+        else if (type.startsWith("@")) {
+            out.writeByte(8);
+            out.writeShort(offsets[Integer.parseInt(type.substring(1))]);
+        }
+        else {
+            out.writeByte(7);
+            out.writeShort(constantPool.classRef(type.substring(1)));
+        }
+    }
+
+    @Override
+    public String getFileName(String className) {
+        return className + ".class";
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        boolean hasBootstrapMethods = constantPool.getBootstrapMethodCount() > 0;
+        if (hasBootstrapMethods)
+            constantPool.utf8("BootstrapMethods");
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            constantPool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(fieldCount);
+            fields.writeTo(out);
+            out.writeShort(methodCount);
+            methods.writeTo(out);
+            if (hasBootstrapMethods) {
+                ByteArrayOutputStream bootstrapMethods = new ByteArrayOutputStream();
+                constantPool.writeBootstrapMethodsTo(new DataOutputStream(bootstrapMethods));
+                out.writeShort(1);
+                out.writeShort(constantPool.utf8("BootstrapMethods"));
+                out.writeInt(bootstrapMethods.size());
+                bootstrapMethods.writeTo(out);
+            }
+            else
+                out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,152 @@
+package main.visitor.codeGenerator.classFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+//constant pool of one class file; equal constants share an entry
+public class ConstantPool {
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int REF_INVOKE_STATIC = 6;
+
+    private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private DataOutputStream out = new DataOutputStream(bytes);
+    private Map<String, Integer> indices = new HashMap<>();
+    private int count = 1;
+    private ByteArrayOutputStream bootstrapMethods = new ByteArrayOutputStream();
+    private int bootstrapMethodCount;
+    private Map<Integer, Integer> bootstrapIndices = new HashMap<>();
+
+    public int utf8(String value) {
+        String key = "u" + value;
+        Integer index = indices.get(key);
+        if (index != null)
+            return index;
+        try {
+            out.writeByte(UTF8);
+            out.writeUTF(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return add(key);
+    }
+
+    public int integer(int value) {
+        String key = "i" + value;
+        Integer index = indices.get(key);
+        if (index != null)
+            return index;
+        try {
+            out.writeByte(INTEGER);
+            out.writeInt(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return add(key);
+    }
+
+    public int classRef(String internalName) {
+        return reference(CLASS, "c" + internalName, utf8(internalName), -1);
+    }
+
+    public int string(String value) {
+        return reference(STRING, "s" + value, utf8(value), -1);
+    }
+
+    public int nameAndType(String name, String descriptor) {
+        return reference(NAME_AND_TYPE, "n" + name + " " + descriptor, utf8(name), utf8(descriptor));
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return reference(FIELD_REF, "f" + owner + "." + name + " " + descriptor,
+                classRef(owner), nameAndType(name, descriptor));
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return reference(METHOD_REF, "m" + owner + "." + name + descriptor,
+                classRef(owner), nameAndType(name, descriptor));
+    }
+
+    public int staticMethodHandle(String owner, String name, String descriptor) {
+        String key = "h" + owner + "." + name + descriptor;
+        Integer index = indices.get(key);
+        if (index != null)
+            return index;
+        int method = methodRef(owner, name, descriptor);
+        try {
+            out.writeByte(METHOD_HANDLE);
+            out.writeByte(REF_INVOKE_STATIC);
+            out.writeShort(method);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return add(key);
+    }
+
+    //the bootstrap method takes no static arguments
+    public int invokeDynamic(String name, String descriptor, String bootstrapOwner, String bootstrapName,
+                             String bootstrapDescriptor) {
+        int handle = staticMethodHandle(bootstrapOwner, bootstrapName, bootstrapDescriptor);
+        Integer bootstrap = bootstrapIndices.get(handle);
+        if (bootstrap == null) {
+            bootstrap = bootstrapMethodCount++;
+            bootstrapIndices.put(handle, bootstrap);
+            DataOutputStream bootstrapOut = new DataOutputStream(bootstrapMethods);
+            try {
+                bootstrapOut.writeShort(handle);
+                bootstrapOut.writeShort(0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return reference(INVOKE_DYNAMIC, "d" + bootstrap + " " + name + descriptor, bootstrap, nameAndType(name, descriptor));
+    }
+
+    public int getBootstrapMethodCount() {
+        return bootstrapMethodCount;
+    }
+
+    //body of the BootstrapMethods attribute
+    public void writeBootstrapMethodsTo(DataOutputStream out) throws IOException {
+        out.writeShort(bootstrapMethodCount);
+        bootstrapMethods.writeTo(out);
+    }
+
+    //entries made of one or two indices of other entries, which are added first
+    private int reference(int tag, String key, int first, int second) {
+        Integer index = indices.get(key);
+        if (index != null)
+            return index;
+        try {
+            out.writeByte(tag);
+            out.writeShort(first);
+            if (second >= 0)
+                out.writeShort(second);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return add(key);
+    }
+
+    private int add(String key) {
+        if (count > 0xFFFF)
+            throw new IllegalStateException("constant pool overflow");
+        indices.put(key, count);
+        return count++;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeShort(count);
+        bytes.writeTo(out);
+    }
+}
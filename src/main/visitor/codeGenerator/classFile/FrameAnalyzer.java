@@ -0,0 +1,441 @@
+package main.visitor.codeGenerator.classFile;
+
+import main.visitor.codeGenerator.InstructionBuffer;
+import main.visitor.codeGenerator.Opcodes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//runs a method body over jvm verification types the way the type checking verifier does. it finds
+//the reachable instructions, the frame on entry to each of them and the largest stack and local
+//variable array the body needs. types are strings: "L" + internal name for objects, "@" + index of
+//the new instruction for uninitialized objects, and the constants below for the rest
+public class FrameAnalyzer {
+    public static final String TOP = "T";
+    public static final String INT = "I";
+    public static final String NULL = "N";
+    public static final String UNINITIALIZED_THIS = "U";
+    private static final String OBJECT = "Ljava/lang/Object";
+
+    private final InstructionBuffer code;
+    private final String className;
+    private final Map<String, String> superClasses;
+    private int[] labelIndices;
+    private boolean[] targetedLabels;
+    private String[][] entryLocals;
+    private String[][] entryStacks;
+    private int maxStack;
+    private int maxLocals;
+
+    //superClasses maps a class of the program to its parent, it is used to merge object types
+    public FrameAnalyzer(InstructionBuffer code, String className, Map<String, String> superClasses) {
+        this.code = code;
+        this.className = className;
+        this.superClasses = superClasses;
+    }
+
+    public void analyze(boolean isStatic, boolean isConstructor, String descriptor) {
+        int size = code.size();
+        entryLocals = new String[size][];
+        entryStacks = new String[size][];
+        findLabels();
+
+        List<String> arguments = argumentTypes(descriptor);
+        maxLocals = arguments.size() + (isStatic ? 0 : 1);
+        for (int i = 0; i < size; i++) {
+            int opcode = code.getOpcode(i);
+            if (opcode == Opcodes.ILOAD || opcode == Opcodes.ALOAD || opcode == Opcodes.ISTORE ||
+                    opcode == Opcodes.ASTORE || opcode == Opcodes.IINC)
+                maxLocals = Math.max(maxLocals, code.getOperand(i) + 1);
+        }
+
+        String[] locals = new String[maxLocals];
+        Arrays.fill(locals, TOP);
+        int slot = 0;
+        if (!isStatic)
+            locals[slot++] = isConstructor ? UNINITIALIZED_THIS : "L" + className;
+        for (String argument : arguments)
+            locals[slot++] = verificationType(argument);
+
+        maxStack = 0;
+        Deque<Integer> worklist = new ArrayDeque<>();
+        if (size > 0 && merge(0, locals, new String[0]))
+            worklist.push(0);
+        while (!worklist.isEmpty())
+            execute(worklist.pop(), worklist);
+
+        targetedLabels = new boolean[labelIndices.length];
+        for (int i = 0; i < size; i++)
+            if (entryLocals[i] != null && code.getOpcode(i) != Opcodes.LABEL &&
+                    Opcodes.operandKindOf(code.getOpcode(i)) == Opcodes.LABEL_OPERAND)
+                targetedLabels[code.getOperand(i)] = true;
+    }
+
+    private void findLabels() {
+        int labels = 0;
+        for (int i = 0; i < code.size(); i++)
+            if (code.getOpcode(i) == Opcodes.LABEL)
+                labels = Math.max(labels, code.getOperand(i) + 1);
+        labelIndices = new int[labels];
+        Arrays.fill(labelIndices, -1);
+        for (int i = 0; i < code.size(); i++)
+            if (code.getOpcode(i) == Opcodes.LABEL)
+                labelIndices[code.getOperand(i)] = i;
+    }
+
+    private void execute(int index, Deque<Integer> worklist) {
+        String[] locals = entryLocals[index].clone();
+        ArrayList<String> stack = new ArrayList<>(Arrays.asList(entryStacks[index]));
+        int opcode = code.getOpcode(index);
+        boolean fallsThrough = true;
+        int jumpLabel = -1;
+
+        switch (opcode) {
+            case Opcodes.LABEL:
+                break;
+            case Opcodes.ACONST_NULL:
+                stack.add(NULL);
+                break;
+            case Opcodes.LDC:
+                stack.add(INT);
+                break;
+            case Opcodes.LDC_STRING:
+                stack.add("Ljava/lang/String");
+                break;
+            case Opcodes.ILOAD:
+                stack.add(INT);
+                break;
+            case Opcodes.ALOAD:
+                stack.add(locals[code.getOperand(index)]);
+                break;
+            case Opcodes.ISTORE:
+            case Opcodes.ASTORE:
+                locals[code.getOperand(index)] = pop(stack);
+                break;
+            case Opcodes.IALOAD:
+            case Opcodes.BALOAD:
+                pop(stack);
+                pop(stack);
+                stack.add(INT);
+                break;
+            case Opcodes.AALOAD:
+                pop(stack);
+                stack.add(elementType(pop(stack)));
+                break;
+            case Opcodes.AASTORE:
+                pop(stack);
+                pop(stack);
+                pop(stack);
+                break;
+            case Opcodes.POP:
+                pop(stack);
+                break;
+            case Opcodes.DUP:
+                stack.add(stack.get(stack.size() - 1));
+                break;
+            //only category 1 values are duplicated, so each type is one stack entry
+            case Opcodes.DUP_X1:
+                stack.add(stack.size() - 2, stack.get(stack.size() - 1));
+                break;
+            case Opcodes.DUP_X2:
+                stack.add(stack.size() - 3, stack.get(stack.size() - 1));
+                break;
+            case Opcodes.DUP2:
+                stack.add(stack.get(stack.size() - 2));
+                stack.add(stack.get(stack.size() - 2));
+                break;
+            case Opcodes.IADD:
+            case Opcodes.ISUB:
+            case Opcodes.IMUL:
+            case Opcodes.IDIV:
+            case Opcodes.IREM:
+                pop(stack);
+                pop(stack);
+                stack.add(INT);
+                break;
+            case Opcodes.INEG:
+            case Opcodes.ARRAYLENGTH:
+            case Opcodes.INSTANCEOF:
+                pop(stack);
+                stack.add(INT);
+                break;
+            case Opcodes.IINC:
+                break;
+            case Opcodes.IFEQ:
+            case Opcodes.IFNE:
+                pop(stack);
+                jumpLabel = code.getOperand(index);
+                break;
+            case Opcodes.IF_ICMPEQ:
+            case Opcodes.IF_ICMPNE:
+            case Opcodes.IF_ICMPLT:
+            case Opcodes.IF_ICMPGE:
+            case Opcodes.IF_ICMPGT:
+            case Opcodes.IF_ACMPEQ:
+            case Opcodes.IF_ACMPNE:
+                pop(stack);
+                pop(stack);
+                jumpLabel = code.getOperand(index);
+                break;
+            case Opcodes.GOTO:
+                jumpLabel = code.getOperand(index);
+                fallsThrough = false;
+                break;
+            case Opcodes.IRETURN:
+            case Opcodes.ARETURN:
+                pop(stack);
+                fallsThrough = false;
+                break;
+            case Opcodes.RETURN:
+                fallsThrough = false;
+                break;
+            case Opcodes.ATHROW:
+                pop(stack);
+                fallsThrough = false;
+                break;
+            case Opcodes.GETSTATIC:
+                stack.add(verificationType(fieldDescriptor(code.getString(code.getOperand(index)))));
+                break;
+            case Opcodes.GETFIELD:
+                pop(stack);
+                stack.add(verificationType(fieldDescriptor(code.getString(code.getOperand(index)))));
+                break;
+            case Opcodes.PUTFIELD:
+                pop(stack);
+                pop(stack);
+                break;
+            case Opcodes.INVOKEVIRTUAL:
+            case Opcodes.INVOKESPECIAL:
+            case Opcodes.INVOKESTATIC:
+            case Opcodes.INVOKEDYNAMIC:
+                invoke(index, locals, stack);
+                break;
+            case Opcodes.NEW:
+                stack.add("@" + index);
+                break;
+            case Opcodes.ANEWARRAY:
+                pop(stack);
+                String elementClass = code.getString(code.getOperand(index));
+                stack.add("L[" + (elementClass.startsWith("[") ? elementClass : "L" + elementClass + ";"));
+                break;
+            case Opcodes.CHECKCAST:
+                pop(stack);
+                stack.add("L" + code.getString(code.getOperand(index)));
+                break;
+            default:
+                throw new IllegalStateException("unknown opcode " + opcode);
+        }
+
+        maxStack = Math.max(maxStack, stack.size());
+        String[] stackArray = stack.toArray(new String[0]);
+        if (fallsThrough && index + 1 < code.size() && merge(index + 1, locals, stackArray))
+            worklist.push(index + 1);
+        if (jumpLabel >= 0) {
+            int target = labelIndices[jumpLabel];
+            if (merge(target, locals, stackArray))
+                worklist.push(target);
+        }
+    }
+
+    private void invoke(int index, String[] locals, ArrayList<String> stack) {
+        String reference = code.getString(code.getOperand(index));
+        int opcode = code.getOpcode(index);
+        String descriptor = opcode == Opcodes.INVOKEDYNAMIC ? dynamicDescriptor(reference) : methodDescriptor(reference);
+        for (int i = argumentTypes(descriptor).size(); i > 0; i--)
+            pop(stack);
+        if (opcode != Opcodes.INVOKESTATIC && opcode != Opcodes.INVOKEDYNAMIC) {
+            String receiver = pop(stack);
+            if (methodName(reference).equals("<init>") &&
+                    (receiver.equals(UNINITIALIZED_THIS) || receiver.startsWith("@"))) {
+                String initialized = receiver.equals(UNINITIALIZED_THIS) ? "L" + className :
+                        "L" + code.getString(code.getOperand(Integer.parseInt(receiver.substring(1))));
+                for (int i = 0; i < locals.length; i++)
+                    if (locals[i].equals(receiver))
+                        locals[i] = initialized;
+                for (int i = 0; i < stack.size(); i++)
+                    if (stack.get(i).equals(receiver))
+                        stack.set(i, initialized);
+            }
+        }
+        String returnType = returnType(descriptor);
+        if (!returnType.equals("V"))
+            stack.add(verificationType(returnType));
+    }
+
+    private String pop(ArrayList<String> stack) {
+        if (stack.isEmpty())
+            throw new IllegalStateException("operand stack underflow in " + className);
+        return stack.remove(stack.size() - 1);
+    }
+
+    //true if the entry state of the instruction changed
+    private boolean merge(int index, String[] locals, String[] stack) {
+        if (entryLocals[index] == null) {
+            entryLocals[index] = locals.clone();
+            entryStacks[index] = stack.clone();
+            return true;
+        }
+        String[] oldStack = entryStacks[index];
+        if (oldStack.length != stack.length)
+            throw new IllegalStateException("inconsistent operand stack height in " + className);
+        boolean changed = false;
+        String[] oldLocals = entryLocals[index];
+        for (int i = 0; i < oldLocals.length; i++) {
+            String merged = mergeTypes(oldLocals[i], locals[i]);
+            if (!merged.equals(oldLocals[i])) {
+                oldLocals[i] = merged;
+                changed = true;
+            }
+        }
+        for (int i = 0; i < oldStack.length; i++) {
+            String merged = mergeTypes(oldStack[i], stack[i]);
+            if (!merged.equals(oldStack[i])) {
+                oldStack[i] = merged;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private String mergeTypes(String first, String second) {
+        if (first.equals(second))
+            return first;
+        if (first.equals(NULL) && second.startsWith("L"))
+            return second;
+        if (second.equals(NULL) && first.startsWith("L"))
+            return first;
+        if (first.startsWith("L") && second.startsWith("L"))
+            return commonSuperClass(first, second);
+        return TOP;
+    }
+
+    private String commonSuperClass(String first, String second) {
+        if (first.startsWith("L[") || second.startsWith("L["))
+            return OBJECT;
+        Set<String> ancestors = new HashSet<>();
+        for (String name = first.substring(1); name != null && ancestors.add(name); name = superClasses.get(name));
+        Set<String> visited = new HashSet<>();
+        for (String name = second.substring(1); name != null && visited.add(name); name = superClasses.get(name))
+            if (ancestors.contains(name))
+                return "L" + name;
+        return OBJECT;
+    }
+
+    public boolean isReachable(int index) {
+        return entryLocals[index] != null;
+    }
+
+    //a frame is needed on an instruction that a reachable jump goes to
+    public boolean needsFrame(int index) {
+        for (int i = index - 1; i >= 0 && code.getOpcode(i) == Opcodes.LABEL; i--)
+            if (targetedLabels[code.getOperand(i)])
+                return true;
+        return false;
+    }
+
+    public int getLabelIndex(int label) {
+        return labelIndices[label];
+    }
+
+    public String[] getLocals(int index) {
+        return entryLocals[index];
+    }
+
+    public String[] getStack(int index) {
+        return entryStacks[index];
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    public static String verificationType(String descriptor) {
+        switch (descriptor.charAt(0)) {
+            case 'I':
+            case 'Z':
+            case 'B':
+            case 'C':
+            case 'S':
+                return INT;
+            case 'L':
+                return "L" + descriptor.substring(1, descriptor.length() - 1);
+            case '[':
+                return "L" + descriptor;
+            default:
+                throw new IllegalStateException("unsupported descriptor " + descriptor);
+        }
+    }
+
+    private static String elementType(String arrayType) {
+        if (!arrayType.startsWith("L["))
+            return OBJECT;
+        return verificationType(arrayType.substring(2));
+    }
+
+    public static List<String> argumentTypes(String descriptor) {
+        List<String> types = new ArrayList<>();
+        int i = descriptor.indexOf('(') + 1;
+        while (descriptor.charAt(i) != ')') {
+            int start = i;
+            while (descriptor.charAt(i) == '[')
+                i++;
+            if (descriptor.charAt(i) == 'L')
+                i = descriptor.indexOf(';', i);
+            i++;
+            types.add(descriptor.substring(start, i));
+        }
+        return types;
+    }
+
+    public static String returnType(String descriptor) {
+        return descriptor.substring(descriptor.indexOf(')') + 1);
+    }
+
+    //references are written as in jasmin: owner/name descriptor for fields, owner/name(args)return for methods
+    public static String methodOwner(String reference) {
+        return reference.substring(0, reference.lastIndexOf('/', reference.indexOf('(')));
+    }
+
+    public static String methodName(String reference) {
+        return reference.substring(reference.lastIndexOf('/', reference.indexOf('(')) + 1, reference.indexOf('('));
+    }
+
+    public static String methodDescriptor(String reference) {
+        return reference.substring(reference.indexOf('('));
+    }
+
+    //invokedynamic operands are name(args)return followed by the reference of the bootstrap method
+    public static String dynamicName(String reference) {
+        return reference.substring(0, reference.indexOf('('));
+    }
+
+    public static String dynamicDescriptor(String reference) {
+        return reference.substring(reference.indexOf('('), reference.indexOf(' '));
+    }
+
+    public static String dynamicBootstrap(String reference) {
+        return reference.substring(reference.indexOf(' ') + 1);
+    }
+
+    public static String fieldOwner(String reference) {
+        return reference.substring(0, reference.lastIndexOf('/', reference.indexOf(' ')));
+    }
+
+    public static String fieldName(String reference) {
+        return reference.substring(reference.lastIndexOf('/', reference.indexOf(' ')) + 1, reference.indexOf(' '));
+    }
+
+    public static String fieldDescriptor(String reference) {
+        return reference.substring(reference.indexOf(' ') + 1);
+    }
+}
@@ -1,5 +1,6 @@
 package main.visitor.nameAnalyzer;
 
+import main.CompilationContext;
 import main.ast.nodes.Program;
 import main.ast.nodes.declaration.classDec.ClassDeclaration;
 import main.ast.nodes.declaration.classDec.classMembersDec.ConstructorDeclaration;
@@ -10,7 +11,6 @@ import main.compileErrorException.nameErrors.FieldRedefinition;
 import main.compileErrorException.nameErrors.MethodNameConflictWithField;
 import main.compileErrorException.nameErrors.MethodRedefinition;
 import main.symbolTable.SymbolTable;
-import main.symbolTable.exceptions.ItemNotFoundException;
 import main.symbolTable.items.ClassSymbolTableItem;
 import main.symbolTable.items.FieldSymbolTableItem;
 import main.symbolTable.items.MethodSymbolTableItem;
@@ -18,22 +18,20 @@ import main.symbolTable.utils.graph.Graph;
 import main.visitor.Visitor;
 
 public class NameChecker extends Visitor<Void> {
+    private final CompilationContext context;
     private String currentClassName;
     private Graph<String> classHierarchy;
     Program root;
 
-    public NameChecker(Graph<String> classHierarchy) {
+    public NameChecker(CompilationContext context, Graph<String> classHierarchy) {
+        this.context = context;
         this.classHierarchy = classHierarchy;
     }
 
     private SymbolTable getCurrentClassSymbolTable() {
-        try {
-            ClassSymbolTableItem classSymbolTableItem = (ClassSymbolTableItem)
-                    SymbolTable.root.getItem(ClassSymbolTableItem.START_KEY + this.currentClassName, true);
-            return classSymbolTableItem.getClassSymbolTable();
-        } catch (ItemNotFoundException ignored) {
-            return null;
-        }
+        ClassSymbolTableItem classSymbolTableItem = (ClassSymbolTableItem)
+                context.getRoot().lookup(ClassSymbolTableItem.START_KEY + this.currentClassName, true);
+        return classSymbolTableItem == null ? null : classSymbolTableItem.getClassSymbolTable();
     }
 
     @Override
@@ -51,7 +49,7 @@ public class NameChecker extends Visitor<Void> {
         if(classDeclaration.getParentClassName() != null) {
             if (this.classHierarchy.isSecondNodeAncestorOf(classDeclaration.getParentClassName().getName(), classDeclaration.getClassName().getName())) {
                 ClassInCyclicInheritance exception = new ClassInCyclicInheritance(classDeclaration);
-                classDeclaration.addError(exception);
+                context.addError(classDeclaration, exception);
             }
         }
         for(FieldDeclaration fieldDeclaration : classDeclaration.getFields()) {
@@ -75,36 +73,29 @@ public class NameChecker extends Visitor<Void> {
     @Override
     public Void visit(MethodDeclaration methodDeclaration) {
         if(!methodDeclaration.hasError()) {
-            try {
-                SymbolTable classSymbolTable = this.getCurrentClassSymbolTable();
-                classSymbolTable.getItem(MethodSymbolTableItem.START_KEY + methodDeclaration.getMethodName().getName(), false);
+            SymbolTable classSymbolTable = this.getCurrentClassSymbolTable();
+            if(classSymbolTable.lookup(MethodSymbolTableItem.START_KEY + methodDeclaration.getMethodName().getName(), false) != null) {
                 MethodRedefinition exception = new MethodRedefinition(methodDeclaration);
-                methodDeclaration.addError(exception);
-            } catch (ItemNotFoundException ignored) {
+                context.addError(methodDeclaration, exception);
             }
         }
         boolean errored = false;
-        try {
-            SymbolTable classSymbolTable = this.getCurrentClassSymbolTable();
-            classSymbolTable.getItem(FieldSymbolTableItem.START_KEY + methodDeclaration.getMethodName().getName(), true);
+        SymbolTable classSymbolTable = this.getCurrentClassSymbolTable();
+        if(classSymbolTable.lookup(FieldSymbolTableItem.START_KEY + methodDeclaration.getMethodName().getName(), true) != null) {
             MethodNameConflictWithField exception = new MethodNameConflictWithField(methodDeclaration);
-            methodDeclaration.addError(exception);
+            context.addError(methodDeclaration, exception);
             errored = true;
-        } catch (ItemNotFoundException ignored) {
         }
         if(!errored)
-            for(ClassDeclaration classDeclaration : root.getClasses()) {
-                String childName = classDeclaration.getClassName().getName();
-                if(classHierarchy.isSecondNodeAncestorOf(childName, currentClassName)) {
-                    try {
-                        ClassSymbolTableItem childSymbolTableItem = (ClassSymbolTableItem) SymbolTable.root.getItem(ClassSymbolTableItem.START_KEY + childName, true);
-                        SymbolTable childSymbolTable = childSymbolTableItem.getClassSymbolTable();
-                        childSymbolTable.getItem(FieldSymbolTableItem.START_KEY + methodDeclaration.getMethodName().getName(), true);
-                        MethodNameConflictWithField exception = new MethodNameConflictWithField(methodDeclaration);
-                        methodDeclaration.addError(exception);
-                        break;
-                    } catch (ItemNotFoundException ignored) {
-                    }
+            for(String childName : classHierarchy.getDescendantsOfNode(currentClassName)) {
+                ClassSymbolTableItem childSymbolTableItem = (ClassSymbolTableItem) context.getRoot().lookup(ClassSymbolTableItem.START_KEY + childName, true);
+                if(childSymbolTableItem == null)
+                    continue;
+                SymbolTable childSymbolTable = childSymbolTableItem.getClassSymbolTable();
+                if(childSymbolTable.lookup(FieldSymbolTableItem.START_KEY + methodDeclaration.getMethodName().getName(), true) != null) {
+                    MethodNameConflictWithField exception = new MethodNameConflictWithField(methodDeclaration);
+                    context.addError(methodDeclaration, exception);
+                    break;
                 }
             }
         return null;
@@ -113,12 +104,10 @@ public class NameChecker extends Visitor<Void> {
     @Override
     public Void visit(FieldDeclaration fieldDeclaration) {
         if(!fieldDeclaration.hasError()) {
-            try {
-                SymbolTable classSymbolTable = this.getCurrentClassSymbolTable();
-                classSymbolTable.getItem(FieldSymbolTableItem.START_KEY + fieldDeclaration.getVarDeclaration().getVarName().getName(), false);
+            SymbolTable classSymbolTable = this.getCurrentClassSymbolTable();
+            if(classSymbolTable.lookup(FieldSymbolTableItem.START_KEY + fieldDeclaration.getVarDeclaration().getVarName().getName(), false) != null) {
                 FieldRedefinition exception = new FieldRedefinition(fieldDeclaration);
-                fieldDeclaration.addError(exception);
-            } catch (ItemNotFoundException ignored) {
+                context.addError(fieldDeclaration, exception);
             }
         }
         return null;
@@ -0,0 +1,409 @@
+package main.visitor.optimizer;
+
+import main.CompilationContext;
+import main.ast.nodes.Node;
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.classDec.ClassDeclaration;
+import main.ast.nodes.declaration.classDec.classMembersDec.ConstructorDeclaration;
+import main.ast.nodes.declaration.classDec.classMembersDec.MethodDeclaration;
+import main.ast.nodes.declaration.variableDec.VarDeclaration;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.operators.UnaryOperator;
+import main.ast.nodes.expression.values.ListValue;
+import main.ast.nodes.expression.values.NullValue;
+import main.ast.nodes.expression.values.primitive.BoolValue;
+import main.ast.nodes.expression.values.primitive.IntValue;
+import main.ast.nodes.expression.values.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import main.ast.nodes.statement.loop.BreakStmt;
+import main.ast.nodes.statement.loop.ContinueStmt;
+import main.ast.nodes.statement.loop.ForStmt;
+import main.ast.nodes.statement.loop.ForeachStmt;
+import main.ast.types.ExpressionTypeTable;
+import main.ast.types.TypeFactory;
+import main.ast.types.single.BoolType;
+import main.ast.types.single.IntType;
+import main.visitor.Visitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+//folds int and bool operators over constants and replaces int and bool locals by the value they are
+//known to hold. a value is known from an assignment of a constant until the local may be assigned
+//again: after a branch only values both sides agree on are kept, and a loop forgets every local it
+//assigns. ifs and fors with a constant condition keep only the code that can run. it runs on a type
+//checked program; each visit returns the node to use in place of the one visited
+public class ConstantFolder extends Visitor<Node> {
+    private final ExpressionTypeTable expressionTypes;
+    private Map<String, Object> constants = new HashMap<>();
+
+    public ConstantFolder(CompilationContext context) {
+        this.expressionTypes = context.getExpressionTypes();
+    }
+
+    private Expression fold(Expression expression) {
+        return (Expression) expression.accept(this);
+    }
+
+    private Statement fold(Statement statement) {
+        return (Statement) statement.accept(this);
+    }
+
+    //Integer or Boolean, null if the expression is not a constant
+    private static Object constantOf(Expression expression) {
+        if (expression instanceof IntValue)
+            return ((IntValue) expression).getConstant();
+        if (expression instanceof BoolValue)
+            return ((BoolValue) expression).getConstant();
+        return null;
+    }
+
+    private Expression constant(Object value, int line) {
+        Expression constant;
+        if (value instanceof Integer) {
+            constant = new IntValue((Integer) value);
+            expressionTypes.put(constant, TypeFactory.INT);
+        }
+        else {
+            constant = new BoolValue((Boolean) value);
+            expressionTypes.put(constant, TypeFactory.BOOL);
+        }
+        constant.setLine(line);
+        return constant;
+    }
+
+    //null when the operator is not folded, as for a division by zero, which has to fail when it runs
+    private static Object evaluate(BinaryOperator operator, Object first, Object second) {
+        if (operator == BinaryOperator.eq)
+            return first.equals(second);
+        if (operator == BinaryOperator.neq)
+            return !first.equals(second);
+        if (!(first instanceof Integer))
+            return null;
+        int left = (Integer) first;
+        int right = (Integer) second;
+        switch (operator) {
+            case add:
+                return left + right;
+            case sub:
+                return left - right;
+            case mult:
+                return left * right;
+            case div:
+                return right == 0 ? null : left / right;
+            case mod:
+                return right == 0 ? null : left % right;
+            case gt:
+                return left > right;
+            case lt:
+                return left < right;
+            default:
+                return null;
+        }
+    }
+
+    private void assigned(Expression lValue, Expression value) {
+        if (!(lValue instanceof Identifier))
+            return;
+        Object constant = constantOf(value);
+        if (constant == null)
+            constants.remove(((Identifier) lValue).getName());
+        else
+            constants.put(((Identifier) lValue).getName(), constant);
+    }
+
+    //a local assigned where control may or may not go is known afterwards only if both ways agree
+    private void keepCommon(Map<String, Object> other) {
+        constants.entrySet().retainAll(other.entrySet());
+    }
+
+    private void forgetAssigned(Node... nodes) {
+        LocalUses uses = new LocalUses();
+        for (Node node : nodes)
+            if (node != null)
+                node.accept(uses);
+        constants.keySet().removeAll(uses.getAssigned());
+    }
+
+    private Statement emptyStatement(int line) {
+        BlockStmt empty = new BlockStmt();
+        empty.setLine(line);
+        return empty;
+    }
+
+    @Override
+    public Node visit(Program program) {
+        for (ClassDeclaration classDeclaration : program.getClasses())
+            classDeclaration.accept(this);
+        return program;
+    }
+
+    @Override
+    public Node visit(ClassDeclaration classDeclaration) {
+        if (classDeclaration.getConstructor() != null)
+            classDeclaration.getConstructor().accept(this);
+        for (MethodDeclaration methodDeclaration : classDeclaration.getMethods())
+            methodDeclaration.accept(this);
+        return classDeclaration;
+    }
+
+    @Override
+    public Node visit(ConstructorDeclaration constructorDeclaration) {
+        return this.visit((MethodDeclaration) constructorDeclaration);
+    }
+
+    //locals start out as 0 and false, arguments are unknown
+    @Override
+    public Node visit(MethodDeclaration methodDeclaration) {
+        constants.clear();
+        for (VarDeclaration localVar : methodDeclaration.getLocalVars()) {
+            if (localVar.getType() instanceof IntType)
+                constants.put(localVar.getVarName().getName(), 0);
+            else if (localVar.getType() instanceof BoolType)
+                constants.put(localVar.getVarName().getName(), false);
+        }
+        ArrayList<Statement> body = methodDeclaration.getBody();
+        for (int i = 0; i < body.size(); i++)
+            body.set(i, fold(body.get(i)));
+        return methodDeclaration;
+    }
+
+    @Override
+    public Node visit(AssignmentStmt assignmentStmt) {
+        if (!(assignmentStmt.getlValue() instanceof Identifier))
+            assignmentStmt.setlValue(fold(assignmentStmt.getlValue()));
+        assignmentStmt.setrValue(fold(assignmentStmt.getrValue()));
+        assigned(assignmentStmt.getlValue(), assignmentStmt.getrValue());
+        return assignmentStmt;
+    }
+
+    @Override
+    public Node visit(BlockStmt blockStmt) {
+        ArrayList<Statement> statements = blockStmt.getStatements();
+        for (int i = 0; i < statements.size(); i++)
+            statements.set(i, fold(statements.get(i)));
+        return blockStmt;
+    }
+
+    @Override
+    public Node visit(ConditionalStmt conditionalStmt) {
+        Expression condition = fold(conditionalStmt.getCondition());
+        Object value = constantOf(condition);
+        if (value != null) {
+            if ((Boolean) value)
+                return fold(conditionalStmt.getThenBody());
+            if (conditionalStmt.getElseBody() != null)
+                return fold(conditionalStmt.getElseBody());
+            return emptyStatement(conditionalStmt.getLine());
+        }
+        conditionalStmt.setCondition(condition);
+        Map<String, Object> beforeBranches = new HashMap<>(constants);
+        conditionalStmt.setThenBody(fold(conditionalStmt.getThenBody()));
+        Map<String, Object> afterThen = constants;
+        constants = beforeBranches;
+        if (conditionalStmt.getElseBody() != null)
+            conditionalStmt.setElseBody(fold(conditionalStmt.getElseBody()));
+        keepCommon(afterThen);
+        return conditionalStmt;
+    }
+
+    @Override
+    public Node visit(MethodCallStmt methodCallStmt) {
+        methodCallStmt.setMethodCall((MethodCall) fold(methodCallStmt.getMethodCall()));
+        return methodCallStmt;
+    }
+
+    @Override
+    public Node visit(PrintStmt print) {
+        print.setArg(fold(print.getArg()));
+        return print;
+    }
+
+    @Override
+    public Node visit(ReturnStmt returnStmt) {
+        if (returnStmt.getReturnedExpr() != null)
+            returnStmt.setReturnedExpr(fold(returnStmt.getReturnedExpr()));
+        return returnStmt;
+    }
+
+    @Override
+    public Node visit(BreakStmt breakStmt) {
+        return breakStmt;
+    }
+
+    @Override
+    public Node visit(ContinueStmt continueStmt) {
+        return continueStmt;
+    }
+
+    //the loop body and its condition see only what no iteration changes, and so does the code after it
+    @Override
+    public Node visit(ForeachStmt foreachStmt) {
+        foreachStmt.setList(fold(foreachStmt.getList()));
+        forgetAssigned(foreachStmt);
+        Map<String, Object> loopInvariant = new HashMap<>(constants);
+        foreachStmt.setBody(fold(foreachStmt.getBody()));
+        constants = loopInvariant;
+        return foreachStmt;
+    }
+
+    //a for whose condition is false on entry leaves only its initialization, a true one loops until
+    //a break. a continue reaches the update from anywhere in the body, so the update sees only what
+    //holds at the top of the body
+    @Override
+    public Node visit(ForStmt forStmt) {
+        if (forStmt.getInitialize() != null)
+            forStmt.setInitialize((AssignmentStmt) fold(forStmt.getInitialize()));
+        forgetAssigned(forStmt.getCondition(), forStmt.getUpdate(), forStmt.getBody());
+        Map<String, Object> loopInvariant = new HashMap<>(constants);
+        if (forStmt.getCondition() != null) {
+            Expression condition = fold(forStmt.getCondition());
+            Object value = constantOf(condition);
+            if (Boolean.FALSE.equals(value))
+                return forStmt.getInitialize() != null ? forStmt.getInitialize() : emptyStatement(forStmt.getLine());
+            forStmt.setCondition(value == null ? condition : null);
+        }
+        forStmt.setBody(fold(forStmt.getBody()));
+        constants = new HashMap<>(loopInvariant);
+        if (forStmt.getUpdate() != null)
+            forStmt.setUpdate((AssignmentStmt) fold(forStmt.getUpdate()));
+        constants = loopInvariant;
+        return forStmt;
+    }
+
+    @Override
+    public Node visit(BinaryExpression binaryExpression) {
+        BinaryOperator operator = binaryExpression.getBinaryOperator();
+        if (operator == BinaryOperator.assign) {
+            if (!(binaryExpression.getFirstOperand() instanceof Identifier))
+                binaryExpression.setFirstOperand(fold(binaryExpression.getFirstOperand()));
+            binaryExpression.setSecondOperand(fold(binaryExpression.getSecondOperand()));
+            assigned(binaryExpression.getFirstOperand(), binaryExpression.getSecondOperand());
+            return binaryExpression;
+        }
+
+        Expression first = fold(binaryExpression.getFirstOperand());
+        binaryExpression.setFirstOperand(first);
+        Object left = constantOf(first);
+        //the second operand of && and || runs only when the first does not decide the result
+        if (operator == BinaryOperator.and || operator == BinaryOperator.or) {
+            if (left != null) {
+                if ((Boolean) left == (operator == BinaryOperator.or))
+                    return constant(left, binaryExpression.getLine());
+                return fold(binaryExpression.getSecondOperand());
+            }
+            Map<String, Object> beforeSecond = new HashMap<>(constants);
+            binaryExpression.setSecondOperand(fold(binaryExpression.getSecondOperand()));
+            keepCommon(beforeSecond);
+            return binaryExpression;
+        }
+
+        Expression second = fold(binaryExpression.getSecondOperand());
+        binaryExpression.setSecondOperand(second);
+        Object right = constantOf(second);
+        if (left == null || right == null)
+            return binaryExpression;
+        Object value = evaluate(operator, left, right);
+        return value == null ? binaryExpression : constant(value, binaryExpression.getLine());
+    }
+
+    //++ and -- of a known local keep it known, the expression itself still stores the new value
+    @Override
+    public Node visit(UnaryExpression unaryExpression) {
+        UnaryOperator operator = unaryExpression.getOperator();
+        if (operator != UnaryOperator.not && operator != UnaryOperator.minus) {
+            Expression operand = unaryExpression.getOperand();
+            if (!(operand instanceof Identifier)) {
+                unaryExpression.setOperand(fold(operand));
+                return unaryExpression;
+            }
+            String name = ((Identifier) operand).getName();
+            Object value = constants.get(name);
+            if (value != null) {
+                boolean increment = operator == UnaryOperator.preinc || operator == UnaryOperator.postinc;
+                constants.put(name, (Integer) value + (increment ? 1 : -1));
+            }
+            return unaryExpression;
+        }
+
+        Expression operand = fold(unaryExpression.getOperand());
+        unaryExpression.setOperand(operand);
+        Object value = constantOf(operand);
+        if (value == null)
+            return unaryExpression;
+        if (operator == UnaryOperator.minus)
+            return constant(-(Integer) value, unaryExpression.getLine());
+        return constant(!(Boolean) value, unaryExpression.getLine());
+    }
+
+    @Override
+    public Node visit(ObjectOrListMemberAccess objectOrListMemberAccess) {
+        objectOrListMemberAccess.setInstance(fold(objectOrListMemberAccess.getInstance()));
+        return objectOrListMemberAccess;
+    }
+
+    @Override
+    public Node visit(Identifier identifier) {
+        Object value = constants.get(identifier.getName());
+        return value == null ? identifier : constant(value, identifier.getLine());
+    }
+
+    @Override
+    public Node visit(ListAccessByIndex listAccessByIndex) {
+        listAccessByIndex.setInstance(fold(listAccessByIndex.getInstance()));
+        listAccessByIndex.setIndex(fold(listAccessByIndex.getIndex()));
+        return listAccessByIndex;
+    }
+
+    @Override
+    public Node visit(MethodCall methodCall) {
+        methodCall.setInstance(fold(methodCall.getInstance()));
+        ArrayList<Expression> args = methodCall.getArgs();
+        for (int i = 0; i < args.size(); i++)
+            args.set(i, fold(args.get(i)));
+        return methodCall;
+    }
+
+    @Override
+    public Node visit(NewClassInstance newClassInstance) {
+        ArrayList<Expression> args = newClassInstance.getArgs();
+        for (int i = 0; i < args.size(); i++)
+            args.set(i, fold(args.get(i)));
+        return newClassInstance;
+    }
+
+    @Override
+    public Node visit(ThisClass thisClass) {
+        return thisClass;
+    }
+
+    @Override
+    public Node visit(ListValue listValue) {
+        ArrayList<Expression> elements = listValue.getElements();
+        for (int i = 0; i < elements.size(); i++)
+            elements.set(i, fold(elements.get(i)));
+        return listValue;
+    }
+
+    @Override
+    public Node visit(NullValue nullValue) {
+        return nullValue;
+    }
+
+    @Override
+    public Node visit(IntValue intValue) {
+        return intValue;
+    }
+
+    @Override
+    public Node visit(BoolValue boolValue) {
+        return boolValue;
+    }
+
+    @Override
+    public Node visit(StringValue stringValue) {
+        return stringValue;
+    }
+}
@@ -0,0 +1,312 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Node;
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.classDec.ClassDeclaration;
+import main.ast.nodes.declaration.classDec.classMembersDec.ConstructorDeclaration;
+import main.ast.nodes.declaration.classDec.classMembersDec.MethodDeclaration;
+import main.ast.nodes.declaration.variableDec.VarDeclaration;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.operators.UnaryOperator;
+import main.ast.nodes.expression.values.ListValue;
+import main.ast.nodes.expression.values.NullValue;
+import main.ast.nodes.expression.values.primitive.BoolValue;
+import main.ast.nodes.expression.values.primitive.IntValue;
+import main.ast.nodes.expression.values.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import main.ast.nodes.statement.loop.BreakStmt;
+import main.ast.nodes.statement.loop.ContinueStmt;
+import main.ast.nodes.statement.loop.ForStmt;
+import main.ast.nodes.statement.loop.ForeachStmt;
+import main.visitor.Visitor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+//removes statements that cannot run, stores to locals that are never read again and the locals left
+//without any use. it runs after the constant folder, which already drops the branches of constant
+//conditions. a statement visit returns the statement to use in its place, null when it goes away
+public class DeadCodeEliminator extends Visitor<Node> {
+    //locals of the current method that nothing reads
+    private Set<String> unread = new HashSet<>();
+    //false after a statement that never lets control reach the next one
+    private boolean completes;
+    //set by a break of the innermost loop
+    private boolean broken;
+    private boolean changed;
+
+    private Statement eliminate(Statement statement) {
+        return (Statement) statement.accept(this);
+    }
+
+    private static Set<String> readBy(Node node) {
+        LocalUses uses = new LocalUses();
+        node.accept(uses);
+        return uses.getRead();
+    }
+
+    //true if evaluating the expression neither changes anything nor can throw
+    private static boolean isPure(Expression expression) {
+        if (expression instanceof Identifier || expression instanceof ThisClass || expression instanceof IntValue
+                || expression instanceof BoolValue || expression instanceof StringValue || expression instanceof NullValue)
+            return true;
+        if (expression instanceof ListValue) {
+            for (Expression element : ((ListValue) expression).getElements())
+                if (!isPure(element))
+                    return false;
+            return true;
+        }
+        if (expression instanceof UnaryExpression) {
+            UnaryOperator operator = ((UnaryExpression) expression).getOperator();
+            return (operator == UnaryOperator.not || operator == UnaryOperator.minus)
+                    && isPure(((UnaryExpression) expression).getOperand());
+        }
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            BinaryOperator operator = binaryExpression.getBinaryOperator();
+            if (operator == BinaryOperator.assign)
+                return false;
+            Expression second = binaryExpression.getSecondOperand();
+            if ((operator == BinaryOperator.div || operator == BinaryOperator.mod)
+                    && !(second instanceof IntValue && ((IntValue) second).getConstant() != 0))
+                return false;
+            return isPure(binaryExpression.getFirstOperand()) && isPure(second);
+        }
+        //a field of this, other instances may be null
+        if (expression instanceof ObjectOrListMemberAccess)
+            return ((ObjectOrListMemberAccess) expression).getInstance() instanceof ThisClass;
+        return false;
+    }
+
+    private static String storedLocal(Statement statement) {
+        if (statement instanceof AssignmentStmt && ((AssignmentStmt) statement).getlValue() instanceof Identifier)
+            return ((Identifier) ((AssignmentStmt) statement).getlValue()).getName();
+        return null;
+    }
+
+    //a store is dead when the local is assigned again or the method returns before anything reads it.
+    //only statements that go on to the next one are looked through
+    private static boolean isDeadStore(ArrayList<Statement> statements, int index) {
+        String local = storedLocal(statements.get(index));
+        if (local == null || !isPure(((AssignmentStmt) statements.get(index)).getrValue()))
+            return false;
+        for (int i = index + 1; i < statements.size(); i++) {
+            Statement statement = statements.get(i);
+            if (readBy(statement).contains(local))
+                return false;
+            if (statement instanceof ReturnStmt || local.equals(storedLocal(statement)))
+                return true;
+            if (!(statement instanceof AssignmentStmt || statement instanceof PrintStmt
+                    || statement instanceof MethodCallStmt))
+                return false;
+        }
+        return false;
+    }
+
+    //the initialization and update of a for have to stay assignments, so a store there is either kept
+    //or dropped
+    private AssignmentStmt eliminate(AssignmentStmt assignmentStmt) {
+        if (assignmentStmt == null || !unread.contains(storedLocal(assignmentStmt))
+                || !isPure(assignmentStmt.getrValue()))
+            return assignmentStmt;
+        changed = true;
+        return null;
+    }
+
+    private static boolean isEmptyBlock(Statement statement) {
+        return statement instanceof BlockStmt && ((BlockStmt) statement).getStatements().isEmpty();
+    }
+
+    private Statement emptyStatement(int line) {
+        BlockStmt empty = new BlockStmt();
+        empty.setLine(line);
+        return empty;
+    }
+
+    private Statement body(Statement statement) {
+        Statement body = eliminate(statement);
+        return body == null ? emptyStatement(statement.getLine()) : body;
+    }
+
+    //completes tells afterwards whether control can run past the last statement
+    private void eliminate(ArrayList<Statement> statements) {
+        ArrayList<Statement> live = new ArrayList<>();
+        completes = true;
+        for (Statement statement : statements) {
+            if (!completes) {
+                changed = true;
+                break;
+            }
+            Statement result = eliminate(statement);
+            if (result != null && !isEmptyBlock(result))
+                live.add(result);
+        }
+        for (int i = live.size() - 1; i >= 0; i--) {
+            if (isDeadStore(live, i)) {
+                live.remove(i);
+                changed = true;
+            }
+        }
+        statements.clear();
+        statements.addAll(live);
+    }
+
+    @Override
+    public Node visit(Program program) {
+        for (ClassDeclaration classDeclaration : program.getClasses())
+            classDeclaration.accept(this);
+        return program;
+    }
+
+    @Override
+    public Node visit(ClassDeclaration classDeclaration) {
+        if (classDeclaration.getConstructor() != null)
+            classDeclaration.getConstructor().accept(this);
+        for (MethodDeclaration methodDeclaration : classDeclaration.getMethods())
+            methodDeclaration.accept(this);
+        return classDeclaration;
+    }
+
+    @Override
+    public Node visit(ConstructorDeclaration constructorDeclaration) {
+        return this.visit((MethodDeclaration) constructorDeclaration);
+    }
+
+    //removing a store can leave another local unread, so the body is gone over until nothing changes.
+    //a local nothing reads or assigns any more loses its declaration and with it its slot
+    @Override
+    public Node visit(MethodDeclaration methodDeclaration) {
+        Set<String> args = new HashSet<>();
+        for (VarDeclaration arg : methodDeclaration.getArgs())
+            args.add(arg.getVarName().getName());
+        do {
+            changed = false;
+            LocalUses uses = new LocalUses();
+            for (Statement statement : methodDeclaration.getBody())
+                statement.accept(uses);
+            unread = new HashSet<>();
+            for (VarDeclaration localVar : methodDeclaration.getLocalVars())
+                unread.add(localVar.getVarName().getName());
+            unread.removeAll(args);
+            unread.removeAll(uses.getRead());
+            broken = false;
+            eliminate(methodDeclaration.getBody());
+        } while (changed);
+        methodDeclaration.setDoesReturn(!completes);
+
+        LocalUses uses = new LocalUses();
+        for (Statement statement : methodDeclaration.getBody())
+            statement.accept(uses);
+        Iterator<VarDeclaration> localVars = methodDeclaration.getLocalVars().iterator();
+        while (localVars.hasNext()) {
+            String name = localVars.next().getVarName().getName();
+            if (!args.contains(name) && !uses.getRead().contains(name) && !uses.getAssigned().contains(name))
+                localVars.remove();
+        }
+        return methodDeclaration;
+    }
+
+    //a call stored to an unread local still has to run
+    @Override
+    public Node visit(AssignmentStmt assignmentStmt) {
+        completes = true;
+        String local = storedLocal(assignmentStmt);
+        if (local == null || !unread.contains(local))
+            return assignmentStmt;
+        Expression value = assignmentStmt.getrValue();
+        if (isPure(value)) {
+            changed = true;
+            return null;
+        }
+        if (value instanceof MethodCall) {
+            changed = true;
+            MethodCallStmt methodCallStmt = new MethodCallStmt((MethodCall) value);
+            methodCallStmt.setLine(assignmentStmt.getLine());
+            return methodCallStmt;
+        }
+        return assignmentStmt;
+    }
+
+    @Override
+    public Node visit(BlockStmt blockStmt) {
+        eliminate(blockStmt.getStatements());
+        return blockStmt;
+    }
+
+    @Override
+    public Node visit(ConditionalStmt conditionalStmt) {
+        Statement thenBody = body(conditionalStmt.getThenBody());
+        boolean thenCompletes = completes;
+        Statement elseBody = null;
+        completes = true;
+        if (conditionalStmt.getElseBody() != null) {
+            elseBody = eliminate(conditionalStmt.getElseBody());
+            if (elseBody != null && isEmptyBlock(elseBody))
+                elseBody = null;
+        }
+        completes |= thenCompletes;
+        if (isEmptyBlock(thenBody) && elseBody == null && isPure(conditionalStmt.getCondition())) {
+            changed = true;
+            return null;
+        }
+        conditionalStmt.setThenBody(thenBody);
+        conditionalStmt.setElseBody(elseBody);
+        return conditionalStmt;
+    }
+
+    @Override
+    public Node visit(MethodCallStmt methodCallStmt) {
+        completes = true;
+        return methodCallStmt;
+    }
+
+    @Override
+    public Node visit(PrintStmt print) {
+        completes = true;
+        return print;
+    }
+
+    @Override
+    public Node visit(ReturnStmt returnStmt) {
+        completes = false;
+        return returnStmt;
+    }
+
+    @Override
+    public Node visit(BreakStmt breakStmt) {
+        broken = true;
+        completes = false;
+        return breakStmt;
+    }
+
+    @Override
+    public Node visit(ContinueStmt continueStmt) {
+        completes = false;
+        return continueStmt;
+    }
+
+    @Override
+    public Node visit(ForeachStmt foreachStmt) {
+        boolean outerBroken = broken;
+        foreachStmt.setBody(body(foreachStmt.getBody()));
+        broken = outerBroken;
+        completes = true;
+        return foreachStmt;
+    }
+
+    //a for without a condition is left only through a break
+    @Override
+    public Node visit(ForStmt forStmt) {
+        forStmt.setInitialize(eliminate(forStmt.getInitialize()));
+        boolean outerBroken = broken;
+        broken = false;
+        forStmt.setBody(body(forStmt.getBody()));
+        forStmt.setUpdate(eliminate(forStmt.getUpdate()));
+        completes = forStmt.getCondition() != null || broken;
+        broken = outerBroken;
+        return forStmt;
+    }
+}
@@ -0,0 +1,178 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.operators.UnaryOperator;
+import main.ast.nodes.expression.values.ListValue;
+import main.ast.nodes.statement.*;
+import main.ast.nodes.statement.loop.ForStmt;
+import main.ast.nodes.statement.loop.ForeachStmt;
+import main.visitor.Visitor;
+
+import java.util.HashSet;
+import java.util.Set;
+
+//the locals a statement or expression reads and the ones it assigns. a bare identifier is always a
+//local variable or an argument, fields are reached through this
+public class LocalUses extends Visitor<Void> {
+    private final Set<String> read = new HashSet<>();
+    private final Set<String> assigned = new HashSet<>();
+    //locals whose list or object may change without being assigned: written through an element or a
+    //member, or handed on to a call or a list literal, which keep the reference instead of a copy
+    private final Set<String> changedInPlace = new HashSet<>();
+
+    public Set<String> getRead() {
+        return read;
+    }
+
+    public Set<String> getAssigned() {
+        return assigned;
+    }
+
+    public Set<String> getChangedInPlace() {
+        return changedInPlace;
+    }
+
+    private void assign(Expression lValue) {
+        if (lValue instanceof Identifier) {
+            assigned.add(((Identifier) lValue).getName());
+            return;
+        }
+        lValue.accept(this);
+        Expression root = lValue;
+        while (root instanceof ListAccessByIndex || root instanceof ObjectOrListMemberAccess)
+            root = root instanceof ListAccessByIndex ? ((ListAccessByIndex) root).getInstance()
+                    : ((ObjectOrListMemberAccess) root).getInstance();
+        if (root instanceof Identifier)
+            changedInPlace.add(((Identifier) root).getName());
+    }
+
+    private void handOn(Expression expression) {
+        if (expression instanceof Identifier)
+            changedInPlace.add(((Identifier) expression).getName());
+        expression.accept(this);
+    }
+
+    @Override
+    public Void visit(AssignmentStmt assignmentStmt) {
+        assign(assignmentStmt.getlValue());
+        assignmentStmt.getrValue().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(BlockStmt blockStmt) {
+        for (Statement statement : blockStmt.getStatements())
+            statement.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ConditionalStmt conditionalStmt) {
+        conditionalStmt.getCondition().accept(this);
+        conditionalStmt.getThenBody().accept(this);
+        if (conditionalStmt.getElseBody() != null)
+            conditionalStmt.getElseBody().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(MethodCallStmt methodCallStmt) {
+        methodCallStmt.getMethodCall().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(PrintStmt print) {
+        print.getArg().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnStmt returnStmt) {
+        if (returnStmt.getReturnedExpr() != null)
+            returnStmt.getReturnedExpr().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ForeachStmt foreachStmt) {
+        assigned.add(foreachStmt.getVariable().getName());
+        foreachStmt.getList().accept(this);
+        foreachStmt.getBody().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ForStmt forStmt) {
+        if (forStmt.getInitialize() != null)
+            forStmt.getInitialize().accept(this);
+        if (forStmt.getCondition() != null)
+            forStmt.getCondition().accept(this);
+        if (forStmt.getUpdate() != null)
+            forStmt.getUpdate().accept(this);
+        forStmt.getBody().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(BinaryExpression binaryExpression) {
+        if (binaryExpression.getBinaryOperator() == BinaryOperator.assign)
+            assign(binaryExpression.getFirstOperand());
+        else
+            binaryExpression.getFirstOperand().accept(this);
+        binaryExpression.getSecondOperand().accept(this);
+        return null;
+    }
+
+    //++ and -- read their operand too
+    @Override
+    public Void visit(UnaryExpression unaryExpression) {
+        UnaryOperator operator = unaryExpression.getOperator();
+        if (operator != UnaryOperator.not && operator != UnaryOperator.minus)
+            assign(unaryExpression.getOperand());
+        unaryExpression.getOperand().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ObjectOrListMemberAccess objectOrListMemberAccess) {
+        objectOrListMemberAccess.getInstance().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(Identifier identifier) {
+        read.add(identifier.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(ListAccessByIndex listAccessByIndex) {
+        listAccessByIndex.getInstance().accept(this);
+        listAccessByIndex.getIndex().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(MethodCall methodCall) {
+        methodCall.getInstance().accept(this);
+        for (Expression arg : methodCall.getArgs())
+            handOn(arg);
+        return null;
+    }
+
+    @Override
+    public Void visit(NewClassInstance newClassInstance) {
+        for (Expression arg : newClassInstance.getArgs())
+            handOn(arg);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListValue listValue) {
+        for (Expression element : listValue.getElements())
+            handOn(element);
+        return null;
+    }
+}
@@ -1,5 +1,6 @@
 package main.visitor.typeChecker;
 
+import main.CompilationContext;
 import main.ast.nodes.declaration.classDec.ClassDeclaration;
 import main.ast.nodes.declaration.classDec.classMembersDec.ConstructorDeclaration;
 import main.ast.nodes.declaration.classDec.classMembersDec.MethodDeclaration;
@@ -13,14 +14,16 @@ import main.ast.nodes.expression.values.primitive.StringValue;
 
 import main.ast.nodes.expression.operators.*;
 
+import main.ast.types.ExpressionTypeTable;
 import main.ast.types.NoType;
 import main.ast.types.functionPointer.FptrType;
-import main.symbolTable.exceptions.ItemNotFoundException;
+import main.symbolTable.ClassMemberTable;
 
 import main.symbolTable.SymbolTable;
 import main.symbolTable.items.*;
 
 import main.ast.types.NullType;
+import main.ast.types.TypeFactory;
 import main.ast.types.Type;
 import main.ast.types.list.ListNameType;
 import main.ast.types.list.ListType;
@@ -35,6 +38,9 @@ import main.visitor.Visitor;
 import java.util.ArrayList;
 
 public class ExpressionTypeChecker extends Visitor<Type> {
+    private final CompilationContext context;
+    private final TypeFactory typeFactory;
+    private final ExpressionTypeTable expressionTypes;
     private final Graph<String> classHierarchy;
     private ClassDeclaration currClassDeclaration;
     private MethodDeclaration currMethodDeclaration;
@@ -46,7 +52,10 @@ public class ExpressionTypeChecker extends Visitor<Type> {
 
     boolean inMethodCallStmt;
 
-    public ExpressionTypeChecker(Graph<String> classHierarchy) {
+    public ExpressionTypeChecker(CompilationContext context, Graph<String> classHierarchy) {
+        this.context = context;
+        this.typeFactory = context.getTypeFactory();
+        this.expressionTypes = context.getExpressionTypes();
         this.classHierarchy = classHierarchy;
         this.assignStmtIsLValue = true;
         this.assignExprIsLValue = true;
@@ -63,73 +72,86 @@ public class ExpressionTypeChecker extends Visitor<Type> {
         this.currMethodDeclaration = currMethodDeclaration;
     }
 
+    public void setIsInMethodCallStmt(boolean inMethodCallStmt){
+        this.inMethodCallStmt = inMethodCallStmt;
+    }
+
     boolean firstIsSubTypeOfSecond(Type first, Type second){
-        if (first instanceof NoType) {
-            return true;
-        }
+        return typeFactory.isSubType(first, second, classHierarchy);
+    }
 
-        if (second instanceof NoType){
-            return false;
-        }
+    //every expression type is recorded so the code generator can read it back
+    private Type record(Expression expression, Type type) {
+        expressionTypes.put(expression, type);
+        return type;
+    }
 
-        if (first instanceof IntType){
-            if (second instanceof IntType)
-                return true;
-        }
+    @Override
+    public Type visit(BinaryExpression binaryExpression) {
+        return record(binaryExpression, infer(binaryExpression));
+    }
 
-        if (first instanceof BoolType){
-            if (second instanceof BoolType)
-                return true;
-        }
+    @Override
+    public Type visit(UnaryExpression unaryExpression) {
+        return record(unaryExpression, infer(unaryExpression));
+    }
 
-        if (first instanceof StringType){
-            if (second instanceof StringType)
-                return true;
-        }
+    @Override
+    public Type visit(ObjectOrListMemberAccess objectOrListMemberAccess) {
+        return record(objectOrListMemberAccess, infer(objectOrListMemberAccess));
+    }
 
-        if (first instanceof ClassType){
-            if (second instanceof ClassType){
-                return (classHierarchy.isSecondNodeAncestorOf(((ClassType) first).getClassName().getName(), ((ClassType) second).getClassName().getName()) ||
-                        ((ClassType) first).getClassName().getName().equals(((ClassType) second).getClassName().getName()));
-            }
-        }
+    @Override
+    public Type visit(Identifier identifier) {
+        return record(identifier, infer(identifier));
+    }
 
-        if (first instanceof FptrType){
-            if (second instanceof FptrType){
-                if (((FptrType) first).getArgumentsTypes().size() == ((FptrType) second).getArgumentsTypes().size() &&
-                        firstIsSubTypeOfSecond(((FptrType) first).getReturnType(), ((FptrType) second).getReturnType())){
-                    for (int i = 0; i < ((FptrType) first).getArgumentsTypes().size(); i++){
-                        if (!firstIsSubTypeOfSecond(((FptrType) first).getArgumentsTypes().get(i), ((FptrType) second).getArgumentsTypes().get(i))){
-                            return false;
-                        }
-                    }
-                    return true;
-                }
-            }
-        }
+    @Override
+    public Type visit(ListAccessByIndex listAccessByIndex) {
+        return record(listAccessByIndex, infer(listAccessByIndex));
+    }
 
-        if (first instanceof ListType){
-            if (second instanceof ListType && ((ListType) first).getElementsTypes().size() == ((ListType) second).getElementsTypes().size()){
-                for (int i = 0; i < ((ListType) first).getElementsTypes().size(); i++){
-                    if (!firstIsSubTypeOfSecond(((ListType) first).getElementsTypes().get(i).getType(), ((ListType) second).getElementsTypes().get(i).getType())){
-                        return false;
-                    }
-                }
-                return true;
-            }
-        }
+    @Override
+    public Type visit(MethodCall methodCall) {
+        return record(methodCall, infer(methodCall));
+    }
 
-        if (first instanceof NullType){
-            if (second instanceof NullType || second instanceof ClassType || second instanceof FptrType){
-                return true;
-            }
-        }
+    @Override
+    public Type visit(NewClassInstance newClassInstance) {
+        return record(newClassInstance, infer(newClassInstance));
+    }
+
+    @Override
+    public Type visit(ThisClass thisClass) {
+        return record(thisClass, infer(thisClass));
+    }
 
-        return false;
+    @Override
+    public Type visit(ListValue listValue) {
+        return record(listValue, infer(listValue));
     }
 
     @Override
-    public Type visit(BinaryExpression binaryExpression) {
+    public Type visit(NullValue nullValue) {
+        return record(nullValue, infer(nullValue));
+    }
+
+    @Override
+    public Type visit(IntValue intValue) {
+        return record(intValue, infer(intValue));
+    }
+
+    @Override
+    public Type visit(BoolValue boolValue) {
+        return record(boolValue, infer(boolValue));
+    }
+
+    @Override
+    public Type visit(StringValue stringValue) {
+        return record(stringValue, infer(stringValue));
+    }
+
+    private Type infer(BinaryExpression binaryExpression) {
         BinaryOperator operator = binaryExpression.getBinaryOperator();
 
         if (operator == BinaryOperator.or || operator == BinaryOperator.and){
@@ -140,20 +162,20 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             unaryIsLValue = false;
 
             if (type1 instanceof NoType && type2 instanceof NoType){
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
             if (type1 instanceof NoType && type2 instanceof BoolType){
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
             if (type1 instanceof BoolType && type2 instanceof NoType){
-                return new BoolType();
+                return TypeFactory.BOOL;
             }
             if (type1 instanceof BoolType && type2 instanceof BoolType){
-                return new BoolType();
+                return TypeFactory.BOOL;
             }
             UnsupportedOperandType exception = new UnsupportedOperandType(binaryExpression.getLine(), operator.toString());
-            binaryExpression.addError(exception);
-            return new NoType();
+            context.addError(binaryExpression, exception);
+            return TypeFactory.NO_TYPE;
         }
 
         if (operator == BinaryOperator.add || operator == BinaryOperator.sub || operator == BinaryOperator.mult || operator == BinaryOperator.div || operator == BinaryOperator.mod){
@@ -164,20 +186,20 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             unaryIsLValue = false;
 
             if (type1 instanceof NoType && type2 instanceof NoType){
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
             if (type1 instanceof NoType && type2 instanceof IntType){
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
             if (type1 instanceof IntType && type2 instanceof NoType){
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
             if (type1 instanceof IntType && type2 instanceof IntType){
-                return new IntType();
+                return TypeFactory.INT;
             }
             UnsupportedOperandType exception = new UnsupportedOperandType(binaryExpression.getLine(), operator.toString());
-            binaryExpression.addError(exception);
-            return new NoType();
+            context.addError(binaryExpression, exception);
+            return TypeFactory.NO_TYPE;
         }
 
         if (operator == BinaryOperator.assign){
@@ -186,11 +208,11 @@ public class ExpressionTypeChecker extends Visitor<Type> {
 
             if (!assignExprIsLValue){
                 LeftSideNotLvalue exception = new LeftSideNotLvalue(binaryExpression.getFirstOperand().getLine());
-                binaryExpression.addError(exception);
+                context.addError(binaryExpression, exception);
                 binaryExpression.getSecondOperand().accept(this);
                 unaryIsLValue = false;
                 assignStmtIsLValue = false;
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
 
             Type type2 = binaryExpression.getSecondOperand().accept(this);
@@ -198,7 +220,7 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             assignStmtIsLValue = false;
 
             if (type1 instanceof NoType || type2 instanceof NoType){
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
             if (firstIsSubTypeOfSecond(type2, type1)){
                 return type2;
@@ -207,8 +229,8 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             assignStmtIsLValue = false;
 
             UnsupportedOperandType exception = new UnsupportedOperandType(binaryExpression.getLine(), operator.toString());
-            binaryExpression.addError(exception);
-            return new NoType();
+            context.addError(binaryExpression, exception);
+            return TypeFactory.NO_TYPE;
         }
 
         if (operator == BinaryOperator.gt || operator == BinaryOperator.lt){
@@ -219,20 +241,20 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             unaryIsLValue = false;
 
             if (type1 instanceof NoType && type2 instanceof NoType){
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
             if (type1 instanceof NoType && type2 instanceof IntType){
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
             if (type1 instanceof IntType && type2 instanceof NoType){
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
             if (type1 instanceof IntType && type2 instanceof IntType){
-                return new BoolType();
+                return TypeFactory.BOOL;
             }
             UnsupportedOperandType exception = new UnsupportedOperandType(binaryExpression.getLine(), operator.toString());
-            binaryExpression.addError(exception);
-            return new NoType();
+            context.addError(binaryExpression, exception);
+            return TypeFactory.NO_TYPE;
         }
 
         if (operator == BinaryOperator.eq || operator == BinaryOperator.neq){
@@ -244,63 +266,62 @@ public class ExpressionTypeChecker extends Visitor<Type> {
 
             if (type1 instanceof ListType || type2 instanceof ListType){
                 UnsupportedOperandType exception = new UnsupportedOperandType(binaryExpression.getLine(), operator.toString());
-                binaryExpression.addError(exception);
-                return new NoType();
+                context.addError(binaryExpression, exception);
+                return TypeFactory.NO_TYPE;
             }
 
             // ClassType
             if (type1 instanceof NullType && type2 instanceof NullType){
-                return new BoolType();
+                return TypeFactory.BOOL;
             }
 
             if (type1 instanceof NullType && type2 instanceof ClassType){
-                return new BoolType();
+                return TypeFactory.BOOL;
             }
 
             if (type1 instanceof ClassType && type2 instanceof NullType){
-                return new BoolType();
+                return TypeFactory.BOOL;
             }
 
             if (type1 instanceof ClassType && type2 instanceof ClassType){
                 if (firstIsSubTypeOfSecond(type1, type2) && firstIsSubTypeOfSecond(type2, type1))
-                    return new BoolType();
+                    return TypeFactory.BOOL;
                 UnsupportedOperandType exception = new UnsupportedOperandType(binaryExpression.getLine(), operator.toString());
-                binaryExpression.addError(exception);
-                return new NoType();
+                context.addError(binaryExpression, exception);
+                return TypeFactory.NO_TYPE;
             }
 
             // FptrType
             if (type1 instanceof NullType && type2 instanceof FptrType){
-                return new BoolType();
+                return TypeFactory.BOOL;
             }
 
             if (type1 instanceof FptrType && type2 instanceof NullType){
-                return new BoolType();
+                return TypeFactory.BOOL;
             }
 
             if (type1 instanceof FptrType && type2 instanceof FptrType){
                 if (firstIsSubTypeOfSecond(type1, type2) && firstIsSubTypeOfSecond(type2, type1))
-                    return new BoolType();
+                    return TypeFactory.BOOL;
                 UnsupportedOperandType exception = new UnsupportedOperandType(binaryExpression.getLine(), operator.toString());
-                binaryExpression.addError(exception);
-                return new NoType();
+                context.addError(binaryExpression, exception);
+                return TypeFactory.NO_TYPE;
             }
 
             if (firstIsSubTypeOfSecond(type1, type2) && firstIsSubTypeOfSecond(type2, type1))
-                return new BoolType();
+                return TypeFactory.BOOL;
 
             if (type1 instanceof NoType || type2 instanceof NoType)
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             UnsupportedOperandType exception = new UnsupportedOperandType(binaryExpression.getLine(), operator.toString());
-            binaryExpression.addError(exception);
-            return new NoType();
+            context.addError(binaryExpression, exception);
+            return TypeFactory.NO_TYPE;
         }
 
-        return new NoType();
+        return TypeFactory.NO_TYPE;
     }
 
-    @Override
-    public Type visit(UnaryExpression unaryExpression) {
+    private Type infer(UnaryExpression unaryExpression) {
 
         UnaryOperator operator = unaryExpression.getOperator();
 
@@ -311,14 +332,14 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             unaryIsLValue = false;
 
             if (type instanceof NoType){
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
             if (type instanceof BoolType){
-                return new BoolType();
+                return TypeFactory.BOOL;
             }
             UnsupportedOperandType exception = new UnsupportedOperandType(unaryExpression.getLine(), operator.toString());
-            unaryExpression.addError(exception);
-            return new NoType();
+            context.addError(unaryExpression, exception);
+            return TypeFactory.NO_TYPE;
         }
 
         if (operator == UnaryOperator.minus){
@@ -328,14 +349,14 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             unaryIsLValue = false;
 
             if (type instanceof NoType){
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
             if (type instanceof IntType){
-                return new IntType();
+                return TypeFactory.INT;
             }
             UnsupportedOperandType exception = new UnsupportedOperandType(unaryExpression.getLine(), operator.toString());
-            unaryExpression.addError(exception);
-            return new NoType();
+            context.addError(unaryExpression, exception);
+            return TypeFactory.NO_TYPE;
         }
 
         if (operator == UnaryOperator.predec || operator == UnaryOperator.postdec || operator == UnaryOperator.preinc || operator == UnaryOperator.postinc){
@@ -345,70 +366,62 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             assignExprIsLValue = false;
             if (!unaryIsLValue) {
                 IncDecOperandNotLvalue exception = new IncDecOperandNotLvalue(unaryExpression.getOperand().getLine(), operator.toString());
-                unaryExpression.addError(exception);
+                context.addError(unaryExpression, exception);
             }
 
             if (type instanceof NoType){
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             }
             if ((type instanceof IntType) && unaryIsLValue){
-                return new IntType();
+                return TypeFactory.INT;
             }
             if (type instanceof IntType)
-                return new NoType();
+                return TypeFactory.NO_TYPE;
             UnsupportedOperandType exception = new UnsupportedOperandType(unaryExpression.getLine(), operator.toString());
-            unaryExpression.addError(exception);
-            return new NoType();
+            context.addError(unaryExpression, exception);
+            return TypeFactory.NO_TYPE;
         }
 
-        return new NoType();
+        return TypeFactory.NO_TYPE;
     }
 
-    @Override
-    public Type visit(ObjectOrListMemberAccess objectOrListMemberAccess) {
+    private Type infer(ObjectOrListMemberAccess objectOrListMemberAccess) {
         Type objectType = objectOrListMemberAccess.getInstance().accept(this);
 
         assignStmtIsLValue = true;
         assignExprIsLValue = true;
         unaryIsLValue = true;
         if (objectType instanceof NoType)
-            return new NoType();
+            return TypeFactory.NO_TYPE;
         else if (objectType instanceof ClassType){
-            try {
-                String classKey = "Class_" + ((ClassType) objectType).getClassName().getName();
-                ClassSymbolTableItem classSymbolTableItem = (ClassSymbolTableItem) SymbolTable.root.getItem(classKey, true);
-                try{
-                    String memberKey = "Field_" + objectOrListMemberAccess.getMemberName().getName();
-                    FieldSymbolTableItem fieldSymbolTableItem = (FieldSymbolTableItem) classSymbolTableItem.getClassSymbolTable().getItem(memberKey, true);
-                    assignStmtIsLValue = true;
-                    assignExprIsLValue = true;
-                    unaryIsLValue = true;
-                    return fieldSymbolTableItem.getType();
-                }
-                catch (ItemNotFoundException e1) {
-                    try{
-                        String memberKey = "Method_" + objectOrListMemberAccess.getMemberName().getName();
-                        MethodSymbolTableItem methodSymbolTableItem = (MethodSymbolTableItem) classSymbolTableItem.getClassSymbolTable().getItem(memberKey, true);
-                        assignStmtIsLValue = false;
-                        assignExprIsLValue = false;
-                        unaryIsLValue = false;
-                        return new FptrType(methodSymbolTableItem.getArgTypes(), methodSymbolTableItem.getReturnType());
-                    }
-                    catch (ItemNotFoundException e2) {
-                        MemberNotAvailableInClass exception = new MemberNotAvailableInClass(objectOrListMemberAccess.getMemberName().getLine(),
-                                objectOrListMemberAccess.getMemberName().getName(), ((ClassType) objectType).getClassName().getName());
-                        objectOrListMemberAccess.addError(exception);
-                        return new NoType();
-                    }
-                }
-            }catch (ItemNotFoundException e) {
+            ClassMemberTable classTable = context.getClassTable(((ClassType) objectType).getClassName().getName());
+            if (classTable == null) {
                 ClassNotDeclared exception = new ClassNotDeclared(objectOrListMemberAccess.getLine(), ((ClassType) objectType).getClassName().getName());
-                objectOrListMemberAccess.addError(exception);
+                context.addError(objectOrListMemberAccess, exception);
+                assignStmtIsLValue = true;
+                assignExprIsLValue = true;
+                unaryIsLValue = true;
+                return TypeFactory.NO_TYPE;
+            }
+            String memberName = objectOrListMemberAccess.getMemberName().getName();
+            FieldSymbolTableItem fieldSymbolTableItem = classTable.findField(memberName);
+            if (fieldSymbolTableItem != null) {
                 assignStmtIsLValue = true;
                 assignExprIsLValue = true;
                 unaryIsLValue = true;
-                return new NoType();
+                return fieldSymbolTableItem.getType();
+            }
+            MethodSymbolTableItem methodSymbolTableItem = classTable.findMethod(memberName);
+            if (methodSymbolTableItem != null) {
+                assignStmtIsLValue = false;
+                assignExprIsLValue = false;
+                unaryIsLValue = false;
+                return typeFactory.fptrType(methodSymbolTableItem.getArgTypes(), methodSymbolTableItem.getReturnType());
             }
+            MemberNotAvailableInClass exception = new MemberNotAvailableInClass(objectOrListMemberAccess.getMemberName().getLine(),
+                    memberName, ((ClassType) objectType).getClassName().getName());
+            context.addError(objectOrListMemberAccess, exception);
+            return TypeFactory.NO_TYPE;
         }else if (objectType instanceof ListType){
             ArrayList<ListNameType> listTypes = ((ListType) objectType).getElementsTypes();
             for (ListNameType listNameType : listTypes){
@@ -419,8 +432,8 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             }
 
             ListMemberNotFound exception = new ListMemberNotFound(objectOrListMemberAccess.getMemberName().getLine(), objectOrListMemberAccess.getMemberName().getName());
-            objectOrListMemberAccess.addError(exception);
-            return new NoType();
+            context.addError(objectOrListMemberAccess, exception);
+            return TypeFactory.NO_TYPE;
         }
         else {
             assignStmtIsLValue = false;
@@ -429,13 +442,12 @@ public class ExpressionTypeChecker extends Visitor<Type> {
         }
 
         MemberAccessOnNoneObjOrListType exception = new MemberAccessOnNoneObjOrListType(objectOrListMemberAccess.getLine());
-        objectOrListMemberAccess.addError(exception);
+        context.addError(objectOrListMemberAccess, exception);
 
-        return new NoType();
+        return TypeFactory.NO_TYPE;
     }
 
-    @Override
-    public Type visit(Identifier identifier) {
+    private Type infer(Identifier identifier) {
         assignStmtIsLValue = true;
         assignExprIsLValue = true;
         unaryIsLValue = true;
@@ -455,12 +467,11 @@ public class ExpressionTypeChecker extends Visitor<Type> {
         }
 
         VarNotDeclared exception = new VarNotDeclared(identifier.getLine(), identifier.getName());
-        identifier.addError(exception);
-        return new NoType();
+        context.addError(identifier, exception);
+        return TypeFactory.NO_TYPE;
     }
 
-    @Override
-    public Type visit(ListAccessByIndex listAccessByIndex) {
+    private Type infer(ListAccessByIndex listAccessByIndex) {
         boolean hasError = false;
 
         Type type1 = listAccessByIndex.getIndex().accept(this);
@@ -468,7 +479,7 @@ public class ExpressionTypeChecker extends Visitor<Type> {
 
         if (!(type1 instanceof IntType) && !(type1 instanceof NoType)){
             ListIndexNotInt exception = new ListIndexNotInt(listAccessByIndex.getIndex().getLine());
-            listAccessByIndex.addError(exception);
+            context.addError(listAccessByIndex, exception);
             hasError = true;
         }
 
@@ -476,12 +487,12 @@ public class ExpressionTypeChecker extends Visitor<Type> {
 
         if (!(type2 instanceof ListType) && !(type2 instanceof NoType)){
             ListAccessByIndexOnNoneList exception = new ListAccessByIndexOnNoneList(listAccessByIndex.getInstance().getLine());
-            listAccessByIndex.addError(exception);
+            context.addError(listAccessByIndex, exception);
             hasError = true;
         }
 
-        //if (type1 instanceof NoType) return new NoType(); // Check later: erroraye badi shayad az dast beran.
-        if (type2 instanceof NoType) return new NoType();
+        //if (type1 instanceof NoType) return TypeFactory.NO_TYPE; // Check later: erroraye badi shayad az dast beran.
+        if (type2 instanceof NoType) return TypeFactory.NO_TYPE;
 
         if (type2 instanceof ListType){
             boolean sameElements = true;
@@ -497,45 +508,44 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             if (sameElements){
                 if (((ListType) type2).getElementsTypes().size() > 0) {
                     if (hasError)
-                        return new NoType();
+                        return TypeFactory.NO_TYPE;
                     else {
                         return ((ListType) type2).getElementsTypes().get(0).getType();
                     }
                 }
                 else
-                    return new NoType();
+                    return TypeFactory.NO_TYPE;
             }
             else{
                 if (type1 instanceof NoType) {
                     CantUseExprAsIndexOfMultiTypeList exception = new CantUseExprAsIndexOfMultiTypeList(listAccessByIndex.getIndex().getLine());
-                    listAccessByIndex.addError(exception);
-                    return new NoType();
+                    context.addError(listAccessByIndex, exception);
+                    return TypeFactory.NO_TYPE;
                 }
                 if (listAccessByIndex.getIndex() instanceof IntValue) {
                     if (((IntValue) listAccessByIndex.getIndex()).getConstant() >= ((ListType) type2).getElementsTypes().size()) {
                         if (hasError)
-                            return new NoType();
+                            return TypeFactory.NO_TYPE;
                         else
                             return ((ListType) type2).getElementsTypes().get(0).getType();
                     } else {
                         if (hasError)
-                            return new NoType();
+                            return TypeFactory.NO_TYPE;
                         else
                             return ((ListType) type2).getElementsTypes().get(((IntValue) listAccessByIndex.getIndex()).getConstant()).getType();
                     }
 
                 }
                 CantUseExprAsIndexOfMultiTypeList exception = new CantUseExprAsIndexOfMultiTypeList(listAccessByIndex.getIndex().getLine());
-                listAccessByIndex.addError(exception);
-                return new NoType();
+                context.addError(listAccessByIndex, exception);
+                return TypeFactory.NO_TYPE;
             }
         }
 
-        return new NoType();
+        return TypeFactory.NO_TYPE;
     }
 
-    @Override
-    public Type visit(MethodCall methodCall) {
+    private Type infer(MethodCall methodCall) {
         Type type = methodCall.getInstance().accept(this);
         assignStmtIsLValue = false;
         assignExprIsLValue = false;
@@ -548,19 +558,19 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             assignStmtIsLValue = false;
             assignExprIsLValue = false;
             unaryIsLValue = false;
-            return new NoType();
+            return TypeFactory.NO_TYPE;
         }
         if (!(type instanceof FptrType)){
             CallOnNoneFptrType exception = new CallOnNoneFptrType(methodCall.getLine());
-            methodCall.addError(exception);
-            return new NoType();
+            context.addError(methodCall, exception);
+            return TypeFactory.NO_TYPE;
         }
 
         boolean hasError = false;
 
         if ((((FptrType) type).getReturnType() instanceof NullType) && !inMethodCallStmt){
             CantUseValueOfVoidMethod exception = new CantUseValueOfVoidMethod(methodCall.getLine());
-            methodCall.addError(exception);
+            context.addError(methodCall, exception);
             hasError = true;
         }
 
@@ -568,7 +578,7 @@ public class ExpressionTypeChecker extends Visitor<Type> {
 
         if (args.size() != ((FptrType) type).getArgumentsTypes().size()){
             MethodCallNotMatchDefinition exception = new MethodCallNotMatchDefinition(methodCall.getLine());
-            methodCall.addError(exception);
+            context.addError(methodCall, exception);
             hasError = true;
         }
 
@@ -576,7 +586,7 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             Type argType = args.get(i).accept(this);
             if (!hasError && !firstIsSubTypeOfSecond(argType, ((FptrType) type).getArgumentsTypes().get(i))){ // Check if later
                 MethodCallNotMatchDefinition exception = new MethodCallNotMatchDefinition(methodCall.getLine());
-                methodCall.addError(exception);
+                context.addError(methodCall, exception);
                 hasError = true;
             }
         }
@@ -585,24 +595,19 @@ public class ExpressionTypeChecker extends Visitor<Type> {
         assignExprIsLValue = false;
         unaryIsLValue = false;
 
-        if (hasError) return new NoType();
+        if (hasError) return TypeFactory.NO_TYPE;
         return ((FptrType) type).getReturnType();
     }
 
-    @Override
-    public Type visit(NewClassInstance newClassInstance) {
+    private Type infer(NewClassInstance newClassInstance) {
         assignStmtIsLValue = false;
         assignExprIsLValue = false;
         unaryIsLValue = false;
         boolean hasError = false;
-        ClassSymbolTableItem classSymbolTableItem = null;
-        try {
-            String classKey = "Class_" + newClassInstance.getClassType().getClassName().getName();
-            classSymbolTableItem = (ClassSymbolTableItem) SymbolTable.root.getItem(classKey, true);
-        }
-        catch(ItemNotFoundException e){
+        ClassMemberTable classTable = context.getClassTable(newClassInstance.getClassType().getClassName().getName());
+        if (classTable == null) {
             ClassNotDeclared exception = new ClassNotDeclared(newClassInstance.getLine(), newClassInstance.getClassType().getClassName().getName());
-            newClassInstance.addError(exception);
+            context.addError(newClassInstance, exception);
 
             ArrayList<Expression> args = newClassInstance.getArgs();
             for (int i = 0; i < args.size(); i++) {
@@ -611,10 +616,10 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             assignStmtIsLValue = false;
             assignExprIsLValue = false;
             unaryIsLValue = false;
-            return new NoType();
+            return TypeFactory.NO_TYPE;
         }
 
-        ConstructorDeclaration constructorDeclaration = classSymbolTableItem.getClassDeclaration().getConstructor();
+        ConstructorDeclaration constructorDeclaration = classTable.getClassDeclaration().getConstructor();
 
         ArrayList<Expression> args = newClassInstance.getArgs();
 
@@ -623,7 +628,7 @@ public class ExpressionTypeChecker extends Visitor<Type> {
 
             if (args.size() != constructorArgs.size()){
                 ConstructorArgsNotMatchDefinition exception = new ConstructorArgsNotMatchDefinition(newClassInstance);
-                newClassInstance.addError(exception);
+                context.addError(newClassInstance, exception);
                 hasError = true;
             }
 
@@ -631,7 +636,7 @@ public class ExpressionTypeChecker extends Visitor<Type> {
                 Type argType = args.get(i).accept(this);
                 if (!hasError && !firstIsSubTypeOfSecond(argType, constructorArgs.get(i).getType())){ // Check if later
                     ConstructorArgsNotMatchDefinition exception = new ConstructorArgsNotMatchDefinition(newClassInstance);
-                    newClassInstance.addError(exception);
+                    context.addError(newClassInstance, exception);
                     hasError = true;
                 }
             }
@@ -648,33 +653,31 @@ public class ExpressionTypeChecker extends Visitor<Type> {
             unaryIsLValue = false;
             if (args.size() != 0){
                 ConstructorArgsNotMatchDefinition exception = new ConstructorArgsNotMatchDefinition(newClassInstance);
-                newClassInstance.addError(exception);
+                context.addError(newClassInstance, exception);
                 hasError = true;
             }
         }
 
 
-        if (hasError) return new NoType();
-        return newClassInstance.getClassType();
+        if (hasError) return TypeFactory.NO_TYPE;
+        return typeFactory.classType(newClassInstance.getClassType().getClassName().getName());
     }
 
-    @Override
-    public Type visit(ThisClass thisClass) {
+    private Type infer(ThisClass thisClass) {
         assignStmtIsLValue = false;
         assignExprIsLValue = false;
         unaryIsLValue = false;
-        return new ClassType(currClassDeclaration.getClassName());
+        return typeFactory.classType(currClassDeclaration.getClassName().getName());
     }
 
-    @Override
-    public Type visit(ListValue listValue) {
+    private Type infer(ListValue listValue) {
         ArrayList<Expression> elements = listValue.getElements();
 
-        ListType listType = new ListType();
+        ArrayList<Type> elementsTypes = new ArrayList<>();
         for (Expression element : elements) {
-            Type elementType = element.accept(this);
-            listType.addElementType(new ListNameType(elementType));
+            elementsTypes.add(element.accept(this));
         }
+        ListType listType = typeFactory.unnamedListType(elementsTypes);
 
         assignStmtIsLValue = false;
         assignExprIsLValue = false;
@@ -682,35 +685,31 @@ public class ExpressionTypeChecker extends Visitor<Type> {
         return listType;
     }
 
-    @Override
-    public Type visit(NullValue nullValue) {
+    private Type infer(NullValue nullValue) {
         assignStmtIsLValue = false;
         assignExprIsLValue = false;
         unaryIsLValue = false;
-        return new NullType();
+        return TypeFactory.NULL;
     }
 
-    @Override
-    public Type visit(IntValue intValue) {
+    private Type infer(IntValue intValue) {
         assignStmtIsLValue = false;
         assignExprIsLValue = false;
         unaryIsLValue = false;
-        return new IntType();
+        return TypeFactory.INT;
     }
 
-    @Override
-    public Type visit(BoolValue boolValue) {
+    private Type infer(BoolValue boolValue) {
         assignStmtIsLValue = false;
         assignExprIsLValue = false;
         unaryIsLValue = false;
-        return new BoolType();
+        return TypeFactory.BOOL;
     }
 
-    @Override
-    public Type visit(StringValue stringValue) {
+    private Type infer(StringValue stringValue) {
         assignStmtIsLValue = false;
         assignExprIsLValue = false;
         unaryIsLValue = false;
-        return new StringType();
+        return TypeFactory.STRING;
     }
 }
\ No newline at end of file
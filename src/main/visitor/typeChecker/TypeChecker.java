@@ -1,5 +1,6 @@
 package main.visitor.typeChecker;
 
+import main.CompilationContext;
 import main.ast.nodes.Program;
 import main.ast.nodes.declaration.classDec.ClassDeclaration;
 import main.ast.nodes.declaration.classDec.classMembersDec.ConstructorDeclaration;
@@ -12,12 +13,14 @@ import main.ast.nodes.statement.*;
 import main.ast.nodes.statement.loop.*;
 import main.ast.types.NoType;
 import main.ast.types.NullType;
+import main.ast.types.TypeFactory;
 import main.ast.types.functionPointer.FptrType;
 import main.ast.types.single.*;
 import main.symbolTable.SymbolTable;
-import main.symbolTable.exceptions.ItemNotFoundException;
 import main.symbolTable.items.ClassSymbolTableItem;
 import main.symbolTable.items.FieldSymbolTableItem;
+import main.symbolTable.items.MethodSymbolTableItem;
+import main.symbolTable.items.SymbolTableItem;
 import main.symbolTable.utils.graph.Graph;
 
 import main.visitor.Visitor;
@@ -31,6 +34,7 @@ import main.compileErrorException.typeErrors.*;
 import java.util.ArrayList;
 
 public class TypeChecker extends Visitor<Void> {
+    private final CompilationContext context;
     private final Graph<String> classHierarchy;
     private final ExpressionTypeChecker expressionTypeChecker;
 
@@ -39,75 +43,15 @@ public class TypeChecker extends Visitor<Void> {
 
     private boolean isInLoop;
 
-    public TypeChecker(Graph<String> classHierarchy) {
+    public TypeChecker(CompilationContext context, Graph<String> classHierarchy) {
+        this.context = context;
         this.classHierarchy = classHierarchy;
-        this.expressionTypeChecker = new ExpressionTypeChecker(classHierarchy);
+        this.expressionTypeChecker = new ExpressionTypeChecker(context, classHierarchy);
         this.isInLoop = false;
     }
 
     boolean firstIsSubTypeOfSecond(Type first, Type second){
-        if (first instanceof NoType) {
-            return true;
-        }
-
-        if (second instanceof NoType){
-            return false;
-        }
-
-        if (first instanceof IntType){
-            if (second instanceof IntType)
-                return true;
-        }
-
-        if (first instanceof BoolType){
-            if (second instanceof BoolType)
-                return true;
-        }
-
-        if (first instanceof StringType){
-            if (second instanceof StringType)
-                return true;
-        }
-
-        if (first instanceof ClassType){
-            if (second instanceof ClassType){
-                return (classHierarchy.isSecondNodeAncestorOf(((ClassType) first).getClassName().getName(), ((ClassType) second).getClassName().getName()) ||
-                        ((ClassType) first).getClassName().getName().equals(((ClassType) second).getClassName().getName()));
-            }
-        }
-
-        if (first instanceof FptrType){
-            if (second instanceof FptrType){
-                if (((FptrType) first).getArgumentsTypes().size() == ((FptrType) second).getArgumentsTypes().size() &&
-                        firstIsSubTypeOfSecond(((FptrType) first).getReturnType(), ((FptrType) second).getReturnType())){
-                    for (int i = 0; i < ((FptrType) first).getArgumentsTypes().size(); i++){
-                        if (!firstIsSubTypeOfSecond(((FptrType) first).getArgumentsTypes().get(i), ((FptrType) second).getArgumentsTypes().get(i))){
-                            return false;
-                        }
-                    }
-                    return true;
-                }
-            }
-        }
-
-        if (first instanceof ListType){
-            if (second instanceof ListType && ((ListType) first).getElementsTypes().size() == ((ListType) second).getElementsTypes().size()){
-                for (int i = 0; i < ((ListType) first).getElementsTypes().size(); i++){
-                    if (!firstIsSubTypeOfSecond(((ListType) first).getElementsTypes().get(i).getType(), ((ListType) second).getElementsTypes().get(i).getType())){
-                        return false;
-                    }
-                }
-                return true;
-            }
-        }
-
-        if (first instanceof NullType){
-            if (second instanceof NullType || second instanceof ClassType || second instanceof FptrType){
-                return true;
-            }
-        }
-
-        return false;
+        return context.getTypeFactory().isSubType(first, second, classHierarchy);
     }
 
     boolean getDeclarationTypeErrors(Type type, VarDeclaration varDeclaration){
@@ -118,7 +62,7 @@ public class TypeChecker extends Visitor<Void> {
             ListType list_type = (ListType) type;
             if (list_type.getElementsTypes().size() == 0){
                 CannotHaveEmptyList exception = new CannotHaveEmptyList(varDeclaration.getLine());
-                varDeclaration.addError(exception);
+                context.addError(varDeclaration, exception);
                 noType = true;
             }
             boolean has_duplicate_name = false;
@@ -131,7 +75,7 @@ public class TypeChecker extends Visitor<Void> {
                             elementTypes.get(i).getName().getName().equals(elementTypes.get(j).getName().getName())){
                         if (!has_duplicate_name) {
                             DuplicateListId exception = new DuplicateListId(varDeclaration.getLine());
-                            varDeclaration.addError(exception);
+                            context.addError(varDeclaration, exception);
                         }
                         noTypeIndexes.add(j);
                         has_duplicate_name = true;
@@ -146,7 +90,7 @@ public class TypeChecker extends Visitor<Void> {
             }
 
             for (Integer index : noTypeIndexes) {
-                elementTypes.get(index).setType(new NoType());
+                elementTypes.get(index).setType(TypeFactory.NO_TYPE);
             }
 
             noType = childNotype || noType;
@@ -154,13 +98,9 @@ public class TypeChecker extends Visitor<Void> {
         }
 
         if (type instanceof ClassType){
-            try {
-                String classKey = "Class_" + ((ClassType) type).getClassName().getName();
-                ClassSymbolTableItem classSymbolTableItem = (ClassSymbolTableItem) SymbolTable.root.getItem(classKey, true);
-            }
-            catch (ItemNotFoundException e){
+            if (context.getClassTable(((ClassType) type).getClassName().getName()) == null) {
                 ClassNotDeclared exception = new ClassNotDeclared(varDeclaration.getLine(), ((ClassType) type).getClassName().getName());
-                varDeclaration.addError(exception);
+                context.addError(varDeclaration, exception);
                 noType = true;
             }
         }
@@ -186,7 +126,7 @@ public class TypeChecker extends Visitor<Void> {
             ListType list_type = (ListType) type;
             if (list_type.getElementsTypes().size() == 0){
                 CannotHaveEmptyList exception = new CannotHaveEmptyList(methodDeclaration.getLine());
-                methodDeclaration.addError(exception);
+                context.addError(methodDeclaration, exception);
                 noType = true;
             }
             boolean has_duplicate_name = false;
@@ -199,7 +139,7 @@ public class TypeChecker extends Visitor<Void> {
                             elementTypes.get(i).getName().getName().equals(elementTypes.get(j).getName().getName())){
                         if (!has_duplicate_name) {
                             DuplicateListId exception = new DuplicateListId(methodDeclaration.getLine());
-                            methodDeclaration.addError(exception);
+                            context.addError(methodDeclaration, exception);
                         }
                         noTypeIndexes.add(j);
                         has_duplicate_name = true;
@@ -214,7 +154,7 @@ public class TypeChecker extends Visitor<Void> {
             }
 
             for (Integer index : noTypeIndexes) {
-                elementTypes.get(index).setType(new NoType());
+                elementTypes.get(index).setType(TypeFactory.NO_TYPE);
             }
 
             noType = childNotype || noType;
@@ -222,13 +162,9 @@ public class TypeChecker extends Visitor<Void> {
         }
 
         if (type instanceof ClassType){
-            try {
-                String classKey = "Class_" + ((ClassType) type).getClassName().getName();
-                ClassSymbolTableItem classSymbolTableItem = (ClassSymbolTableItem) SymbolTable.root.getItem(classKey, true);
-            }
-            catch (ItemNotFoundException e){
+            if (context.getClassTable(((ClassType) type).getClassName().getName()) == null) {
                 ClassNotDeclared exception = new ClassNotDeclared(methodDeclaration.getLine(), ((ClassType) type).getClassName().getName());
-                methodDeclaration.addError(exception);
+                context.addError(methodDeclaration, exception);
                 noType = true;
             }
         }
@@ -246,31 +182,87 @@ public class TypeChecker extends Visitor<Void> {
         return noType;
     }
 
+    private void canonicalize(VarDeclaration varDeclaration) {
+        varDeclaration.setType(context.getTypeFactory().canonical(varDeclaration.getType()));
+    }
+
+    private void canonicalize(MethodDeclaration methodDeclaration) {
+        TypeFactory typeFactory = context.getTypeFactory();
+        methodDeclaration.setReturnType(typeFactory.canonical(methodDeclaration.getReturnType()));
+        for (VarDeclaration varDeclaration : methodDeclaration.getArgs())
+            canonicalize(varDeclaration);
+        for (VarDeclaration varDeclaration : methodDeclaration.getLocalVars())
+            canonicalize(varDeclaration);
+    }
+
+    //declared types of every class are checked before any body, since checking can still change them.
+    //then they are replaced by their canonical types, in the declarations and in the symbol table, so
+    //every type the expression checker compares is canonical
+    private void checkDeclarations(Program program) {
+        for (ClassDeclaration classDeclaration : program.getClasses()) {
+            for (FieldDeclaration fieldDeclaration : classDeclaration.getFields())
+                fieldDeclaration.accept(this);
+            ArrayList<MethodDeclaration> methods = new ArrayList<>(classDeclaration.getMethods());
+            if (classDeclaration.getConstructor() != null)
+                methods.add(0, classDeclaration.getConstructor());
+            for (MethodDeclaration methodDeclaration : methods) {
+                if (!(methodDeclaration instanceof ConstructorDeclaration))
+                    getReturnTypeErrors(methodDeclaration.getReturnType(), methodDeclaration);
+                for (VarDeclaration varDeclaration : methodDeclaration.getArgs())
+                    varDeclaration.accept(this);
+                for (VarDeclaration varDeclaration : methodDeclaration.getLocalVars())
+                    varDeclaration.accept(this);
+            }
+        }
+
+        TypeFactory typeFactory = context.getTypeFactory();
+        for (ClassDeclaration classDeclaration : program.getClasses()) {
+            for (FieldDeclaration fieldDeclaration : classDeclaration.getFields())
+                canonicalize(fieldDeclaration.getVarDeclaration());
+            if (classDeclaration.getConstructor() != null)
+                canonicalize(classDeclaration.getConstructor());
+            for (MethodDeclaration methodDeclaration : classDeclaration.getMethods())
+                canonicalize(methodDeclaration);
+        }
+        for (SymbolTableItem classItem : context.getRoot().getItems()) {
+            if (!(classItem instanceof ClassSymbolTableItem))
+                continue;
+            for (SymbolTableItem item : ((ClassSymbolTableItem) classItem).getClassSymbolTable().getItems()) {
+                if (item instanceof FieldSymbolTableItem)
+                    ((FieldSymbolTableItem) item).setType(typeFactory.canonical(((FieldSymbolTableItem) item).getType()));
+                else if (item instanceof MethodSymbolTableItem) {
+                    MethodSymbolTableItem methodItem = (MethodSymbolTableItem) item;
+                    methodItem.setReturnType(typeFactory.canonical(methodItem.getReturnType()));
+                    ArrayList<Type> argTypes = methodItem.getArgTypes();
+                    for (int i = 0; i < argTypes.size(); i++)
+                        argTypes.set(i, typeFactory.canonical(argTypes.get(i)));
+                }
+            }
+        }
+    }
+
     @Override
     public Void visit(Program program) {
+        checkDeclarations(program);
         boolean hasMain = false;
         for(ClassDeclaration classDeclaration : program.getClasses()) {
             if (classDeclaration.getClassName().getName().equals("Main")) {
                 if (classDeclaration.getConstructor() == null){
                     NoConstructorInMainClass exception = new NoConstructorInMainClass(classDeclaration);
-                    program.addError(exception);
+                    context.addError(program, exception);
                 }
                 else {
                     if (classDeclaration.getConstructor().getArgs().size() != 0){
                         MainConstructorCantHaveArgs exception = new MainConstructorCantHaveArgs(classDeclaration.getConstructor().getLine());
-                        program.addError(exception);
+                        context.addError(program, exception);
                     }
                 }
                 if (classDeclaration.getParentClassName() != null){
                     MainClassCantExtend exception = new MainClassCantExtend(classDeclaration.getParentClassName().getLine());
-                    program.addError(exception);
-                    try {
-                        String classKey = "Class_" + classDeclaration.getParentClassName().getName();
-                        ClassSymbolTableItem classSymbolTableItem = (ClassSymbolTableItem) SymbolTable.root.getItem(classKey, true);
-                    }
-                    catch (ItemNotFoundException e){
+                    context.addError(program, exception);
+                    if (context.getClassTable(classDeclaration.getParentClassName().getName()) == null) {
                         ClassNotDeclared notDeclared = new ClassNotDeclared(classDeclaration.getParentClassName().getLine(), classDeclaration.getParentClassName().getName());
-                        classDeclaration.addError(notDeclared);
+                        context.addError(classDeclaration, notDeclared);
                     }
                 }
                 hasMain = true;
@@ -279,15 +271,11 @@ public class TypeChecker extends Visitor<Void> {
                 if (classDeclaration.getParentClassName() != null){
                     if (classDeclaration.getParentClassName().getName().equals("Main")){
                         CannotExtendFromMainClass exception = new CannotExtendFromMainClass(classDeclaration.getParentClassName().getLine());
-                        program.addError(exception);
-                    }
-                    try {
-                        String classKey = "Class_" + classDeclaration.getParentClassName().getName();
-                        ClassSymbolTableItem classSymbolTableItem = (ClassSymbolTableItem) SymbolTable.root.getItem(classKey, true);
+                        context.addError(program, exception);
                     }
-                    catch (ItemNotFoundException e){
+                    if (context.getClassTable(classDeclaration.getParentClassName().getName()) == null) {
                         ClassNotDeclared exception = new ClassNotDeclared(classDeclaration.getParentClassName().getLine(), classDeclaration.getParentClassName().getName());
-                        classDeclaration.addError(exception);
+                        context.addError(classDeclaration, exception);
                     }
                 }
             }
@@ -297,7 +285,7 @@ public class TypeChecker extends Visitor<Void> {
 
         if (!hasMain) {
             NoMainClass excpetion = new NoMainClass();
-            program.addError(excpetion);
+            context.addError(program, excpetion);
         }
         return null;
     }
@@ -307,13 +295,10 @@ public class TypeChecker extends Visitor<Void> {
         currClassDeclaration = classDeclaration;
         expressionTypeChecker.setCurrentClassDeclaration(classDeclaration);
 
-        for(FieldDeclaration fieldDeclaration : classDeclaration.getFields()) {
-            fieldDeclaration.accept(this);
-        }
         if(classDeclaration.getConstructor() != null) {
             if (!classDeclaration.getConstructor().getMethodName().getName().equals(classDeclaration.getClassName().getName())){
                 ConstructorNotSameNameAsClass exception = new ConstructorNotSameNameAsClass(classDeclaration.getConstructor().getLine());
-                classDeclaration.getConstructor().addError(exception);
+                context.addError(classDeclaration.getConstructor(), exception);
             }
             classDeclaration.getConstructor().accept(this);
         }
@@ -328,12 +313,6 @@ public class TypeChecker extends Visitor<Void> {
         expressionTypeChecker.setCurrentMethodDeclaration(constructorDeclaration);
         currMethodDeclaration = constructorDeclaration;
 
-        for(VarDeclaration varDeclaration : constructorDeclaration.getArgs()) {
-            varDeclaration.accept(this);
-        }
-        for(VarDeclaration varDeclaration : constructorDeclaration.getLocalVars()) {
-            varDeclaration.accept(this);
-        }
         ArrayList<Statement> body = constructorDeclaration.getBody();
         for (Statement s : body)
             s.accept(this);
@@ -345,14 +324,6 @@ public class TypeChecker extends Visitor<Void> {
         expressionTypeChecker.setCurrentMethodDeclaration(methodDeclaration);
         currMethodDeclaration = methodDeclaration;
 
-        getReturnTypeErrors(methodDeclaration.getReturnType(), methodDeclaration);
-
-        for(VarDeclaration varDeclaration : methodDeclaration.getArgs()) {
-            varDeclaration.accept(this);
-        }
-        for(VarDeclaration varDeclaration : methodDeclaration.getLocalVars()) {
-            varDeclaration.accept(this);
-        }
         ArrayList<Statement> body = methodDeclaration.getBody();
 
         boolean hasReturn = false;
@@ -364,7 +335,7 @@ public class TypeChecker extends Visitor<Void> {
         }
         if (!(methodDeclaration.getReturnType() instanceof NullType) && !(hasReturn)){
             MissingReturnStatement exception = new MissingReturnStatement(methodDeclaration);
-            methodDeclaration.addError(exception);
+            context.addError(methodDeclaration, exception);
         }
 
         return null;
@@ -379,10 +350,10 @@ public class TypeChecker extends Visitor<Void> {
     @Override
     public Void visit(VarDeclaration varDeclaration) {
         if (getDeclarationTypeErrors(varDeclaration.getType(), varDeclaration)){
-            varDeclaration.setType(new NoType());
+            varDeclaration.setType(TypeFactory.NO_TYPE);
 //            try {
 //                String classKey = "Class_" + currClassDeclaration.getClassName().getName();
-//                ClassSymbolTableItem classSymbolTableItem = (ClassSymbolTableItem) SymbolTable.root.getItem(classKey, true);
+//                ClassSymbolTableItem classSymbolTableItem = (ClassSymbolTableItem) context.getRoot().getItem(classKey, true);
 //                try {
 //                    String memberKey = "Field_" + varDeclaration.getVarName().getName();
 //                    FieldSymbolTableItem fieldSymbolTableItem = (FieldSymbolTableItem) classSymbolTableItem.getClassSymbolTable().getItem(memberKey, true);
@@ -401,7 +372,7 @@ public class TypeChecker extends Visitor<Void> {
         Type ltype = assignmentStmt.getlValue().accept(this.expressionTypeChecker);
         if (!expressionTypeChecker.assignStmtIsLValue){
             LeftSideNotLvalue exception = new LeftSideNotLvalue(assignmentStmt.getlValue().getLine());
-            assignmentStmt.addError(exception);
+            context.addError(assignmentStmt, exception);
             Type rtype = assignmentStmt.getrValue().accept(this.expressionTypeChecker);
             return null;
         }
@@ -414,7 +385,7 @@ public class TypeChecker extends Visitor<Void> {
 
         if (!firstIsSubTypeOfSecond(rtype, ltype)){
             UnsupportedOperandType exception = new UnsupportedOperandType(assignmentStmt.getLine(), BinaryOperator.assign.toString());
-            assignmentStmt.addError(exception);
+            context.addError(assignmentStmt, exception);
         }
 
         return null;
@@ -437,7 +408,7 @@ public class TypeChecker extends Visitor<Void> {
         Type type1 = conditionalStmt.getCondition().accept(this.expressionTypeChecker);
         if (!(type1 instanceof BoolType) && !(type1 instanceof NoType)){
             ConditionNotBool exception = new ConditionNotBool(conditionalStmt.getLine());
-            conditionalStmt.addError(exception);
+            context.addError(conditionalStmt, exception);
         }
 
         conditionalStmt.getThenBody().accept(this);
@@ -459,7 +430,7 @@ public class TypeChecker extends Visitor<Void> {
         Type type = print.getArg().accept(this.expressionTypeChecker);
         if (!(type instanceof BoolType) && !(type instanceof IntType) && !(type instanceof StringType) && !(type instanceof NoType)) {
             UnsupportedTypeForPrint exception = new UnsupportedTypeForPrint(print.getLine());
-            print.addError(exception);
+            context.addError(print, exception);
         }
         return null;
     }
@@ -470,7 +441,7 @@ public class TypeChecker extends Visitor<Void> {
 
         if (!firstIsSubTypeOfSecond(type, currMethodDeclaration.getReturnType())){
             ReturnValueNotMatchMethodReturnType exception = new ReturnValueNotMatchMethodReturnType(returnStmt);
-            returnStmt.addError(exception);
+            context.addError(returnStmt, exception);
         }
         return null;
     }
@@ -479,7 +450,7 @@ public class TypeChecker extends Visitor<Void> {
     public Void visit(BreakStmt breakStmt) {
         if (!isInLoop){
             ContinueBreakNotInLoop exception = new ContinueBreakNotInLoop(breakStmt.getLine(), 0);
-            breakStmt.addError(exception);
+            context.addError(breakStmt, exception);
         }
         return null;
     }
@@ -488,7 +459,7 @@ public class TypeChecker extends Visitor<Void> {
     public Void visit(ContinueStmt continueStmt) {
         if (!isInLoop){
             ContinueBreakNotInLoop exception = new ContinueBreakNotInLoop(continueStmt.getLine(), 1);
-            continueStmt.addError(exception);
+            context.addError(continueStmt, exception);
         }
         return null;
     }
@@ -506,7 +477,7 @@ public class TypeChecker extends Visitor<Void> {
         }
         if (!(type2 instanceof ListType)){
             ForeachCantIterateNoneList exception = new ForeachCantIterateNoneList(foreachStmt.getLine());
-            foreachStmt.addError(exception);
+            context.addError(foreachStmt, exception);
         }
         else{
             boolean sameElements = true;
@@ -529,13 +500,13 @@ public class TypeChecker extends Visitor<Void> {
 
                 if (!sameElements) {
                     ForeachListElementsNotSameType exception = new ForeachListElementsNotSameType(foreachStmt.getList().getLine());
-                    foreachStmt.addError(exception);
+                    context.addError(foreachStmt, exception);
                 }
 
                 Type first = ((ListType) type2).getElementsTypes().get(0).getType();
                 if (!firstIsSubTypeOfSecond(first, type1) || !firstIsSubTypeOfSecond(type1, first) && !(first instanceof NoType)) {
                     ForeachVarNotMatchList exception = new ForeachVarNotMatchList(foreachStmt);
-                    foreachStmt.addError(exception);
+                    context.addError(foreachStmt, exception);
                 }
             }
         }
@@ -551,7 +522,7 @@ public class TypeChecker extends Visitor<Void> {
         Type type = forStmt.getCondition().accept(this.expressionTypeChecker);
         if (!(type instanceof BoolType) && !(type instanceof NoType)){
             ConditionNotBool exception = new ConditionNotBool(forStmt.getLine());
-            forStmt.addError(exception);
+            context.addError(forStmt, exception);
         }
 
         forStmt.getUpdate().accept(this);
@@ -560,4 +531,4 @@ public class TypeChecker extends Visitor<Void> {
         isInLoop = false;
         return null;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -21,14 +21,24 @@ import main.ast.nodes.statement.loop.ForeachStmt;
 import main.compileErrorException.CompileErrorException;
 import main.visitor.Visitor;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 
 public class ErrorReporter extends Visitor<Integer> {
+    private PrintStream out;
+
+    public ErrorReporter() {
+        this(System.out);
+    }
+
+    public ErrorReporter(PrintStream out) {
+        this.out = out;
+    }
 
     private int printErrors(Node node) {
         ArrayList<CompileErrorException> errors = node.flushErrors();
         for(CompileErrorException compileErrorException : errors) {
-            System.out.println(compileErrorException.getMessage());
+            out.println(compileErrorException.getMessage());
         }
         return errors.size();
     }
@@ -0,0 +1,292 @@
+package main.visitor.utils;
+
+import main.ast.nodes.Node;
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.classDec.ClassDeclaration;
+import main.ast.nodes.declaration.classDec.classMembersDec.ConstructorDeclaration;
+import main.ast.nodes.declaration.classDec.classMembersDec.FieldDeclaration;
+import main.ast.nodes.declaration.classDec.classMembersDec.MethodDeclaration;
+import main.ast.nodes.declaration.variableDec.VarDeclaration;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.values.ListValue;
+import main.ast.nodes.expression.values.NullValue;
+import main.ast.nodes.expression.values.primitive.BoolValue;
+import main.ast.nodes.expression.values.primitive.IntValue;
+import main.ast.nodes.expression.values.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import main.ast.nodes.statement.loop.BreakStmt;
+import main.ast.nodes.statement.loop.ContinueStmt;
+import main.ast.nodes.statement.loop.ForStmt;
+import main.ast.nodes.statement.loop.ForeachStmt;
+import main.visitor.Visitor;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+public class NodeCounter extends Visitor<Void> {
+    private final Map<String, Integer> counts = new TreeMap<>();
+
+    private void count(Node node) {
+        counts.merge(node.getClass().getSimpleName(), 1, Integer::sum);
+    }
+
+    public Map<String, Integer> getCounts() {
+        return counts;
+    }
+
+    @Override
+    public Void visit(Program program) {
+        count(program);
+        for(ClassDeclaration classDeclaration : program.getClasses()) {
+            classDeclaration.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ClassDeclaration classDeclaration) {
+        count(classDeclaration);
+        classDeclaration.getClassName().accept(this);
+        if(classDeclaration.getParentClassName() != null) {
+            classDeclaration.getParentClassName().accept(this);
+        }
+        for(FieldDeclaration fieldDeclaration : classDeclaration.getFields()) {
+            fieldDeclaration.accept(this);
+        }
+        if(classDeclaration.getConstructor() != null) {
+            classDeclaration.getConstructor().accept(this);
+        }
+        for(MethodDeclaration methodDeclaration : classDeclaration.getMethods()) {
+            methodDeclaration.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ConstructorDeclaration constructorDeclaration) {
+        count(constructorDeclaration);
+        constructorDeclaration.getMethodName().accept(this);
+        for(VarDeclaration varDeclaration : constructorDeclaration.getArgs()) {
+            varDeclaration.accept(this);
+        }
+        for(VarDeclaration varDeclaration : constructorDeclaration.getLocalVars()) {
+            varDeclaration.accept(this);
+        }
+        for(Statement statement : constructorDeclaration.getBody()) {
+            statement.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(MethodDeclaration methodDeclaration) {
+        count(methodDeclaration);
+        methodDeclaration.getMethodName().accept(this);
+        for(VarDeclaration varDeclaration : methodDeclaration.getArgs()) {
+            varDeclaration.accept(this);
+        }
+        for(VarDeclaration varDeclaration : methodDeclaration.getLocalVars()) {
+            varDeclaration.accept(this);
+        }
+        for(Statement statement : methodDeclaration.getBody()) {
+            statement.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(FieldDeclaration fieldDeclaration) {
+        count(fieldDeclaration);
+        fieldDeclaration.getVarDeclaration().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(VarDeclaration varDeclaration) {
+        count(varDeclaration);
+        varDeclaration.getVarName().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(AssignmentStmt assignmentStmt) {
+        count(assignmentStmt);
+        assignmentStmt.getlValue().accept(this);
+        assignmentStmt.getrValue().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(BlockStmt blockStmt) {
+        count(blockStmt);
+        for(Statement statement : blockStmt.getStatements()) {
+            statement.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ConditionalStmt conditionalStmt) {
+        count(conditionalStmt);
+        conditionalStmt.getCondition().accept(this);
+        conditionalStmt.getThenBody().accept(this);
+        if(conditionalStmt.getElseBody() != null) {
+            conditionalStmt.getElseBody().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(MethodCallStmt methodCallStmt) {
+        count(methodCallStmt);
+        methodCallStmt.getMethodCall().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(PrintStmt print) {
+        count(print);
+        print.getArg().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnStmt returnStmt) {
+        count(returnStmt);
+        returnStmt.getReturnedExpr().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(BreakStmt breakStmt) {
+        count(breakStmt);
+        return null;
+    }
+
+    @Override
+    public Void visit(ContinueStmt continueStmt) {
+        count(continueStmt);
+        return null;
+    }
+
+    @Override
+    public Void visit(ForeachStmt foreachStmt) {
+        count(foreachStmt);
+        foreachStmt.getVariable().accept(this);
+        foreachStmt.getList().accept(this);
+        foreachStmt.getBody().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ForStmt forStmt) {
+        count(forStmt);
+        if(forStmt.getInitialize() != null) {
+            forStmt.getInitialize().accept(this);
+        }
+        if(forStmt.getCondition() != null) {
+            forStmt.getCondition().accept(this);
+        }
+        if(forStmt.getUpdate() != null) {
+            forStmt.getUpdate().accept(this);
+        }
+        forStmt.getBody().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(BinaryExpression binaryExpression) {
+        count(binaryExpression);
+        binaryExpression.getFirstOperand().accept(this);
+        binaryExpression.getSecondOperand().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(UnaryExpression unaryExpression) {
+        count(unaryExpression);
+        unaryExpression.getOperand().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ObjectOrListMemberAccess objectOrListMemberAccess) {
+        count(objectOrListMemberAccess);
+        objectOrListMemberAccess.getInstance().accept(this);
+        objectOrListMemberAccess.getMemberName().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(Identifier identifier) {
+        count(identifier);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListAccessByIndex listAccessByIndex) {
+        count(listAccessByIndex);
+        listAccessByIndex.getInstance().accept(this);
+        listAccessByIndex.getIndex().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(MethodCall methodCall) {
+        count(methodCall);
+        methodCall.getInstance().accept(this);
+        for(Expression expression : methodCall.getArgs()) {
+            expression.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(NewClassInstance newClassInstance) {
+        count(newClassInstance);
+        for(Expression expression : newClassInstance.getArgs()) {
+            expression.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ThisClass thisClass) {
+        count(thisClass);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListValue listValue) {
+        count(listValue);
+        for(Expression expression : listValue.getElements()) {
+            expression.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(NullValue nullValue) {
+        count(nullValue);
+        return null;
+    }
+
+    @Override
+    public Void visit(IntValue intValue) {
+        count(intValue);
+        return null;
+    }
+
+    @Override
+    public Void visit(BoolValue boolValue) {
+        count(boolValue);
+        return null;
+    }
+
+    @Override
+    public Void visit(StringValue stringValue) {
+        count(stringValue);
+        return null;
+    }
+
+}
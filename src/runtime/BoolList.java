@@ -0,0 +1,45 @@
+package runtime;
+
+//a list whose elements are all bools
+public final class BoolList extends SophiaList {
+    private boolean[] elements;
+    //another list may hold the same array, the first write copies it
+    private boolean shared;
+
+    public BoolList(int size) {
+        this.elements = new boolean[size];
+    }
+
+    private BoolList(boolean[] elements) {
+        this.elements = elements;
+        this.shared = true;
+    }
+
+    public boolean get(int index) {
+        return elements[index];
+    }
+
+    public void set(int index, boolean value) {
+        if (shared) {
+            elements = elements.clone();
+            shared = false;
+        }
+        elements[index] = value;
+    }
+
+    //the array itself, for loops over the list. it is no longer shared, so writes through this list
+    //land in it
+    public boolean[] elements() {
+        if (shared) {
+            elements = elements.clone();
+            shared = false;
+        }
+        return elements;
+    }
+
+    @Override
+    public SophiaList copy() {
+        shared = true;
+        return new BoolList(elements);
+    }
+}
@@ -0,0 +1,133 @@
+package runtime;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+//a sophia function pointer: an object and one of its methods. compiled programs call it through
+//invoke0..invoke4, or invoke with an array for longer argument lists, or through an FptrCallSite;
+//arguments and results are boxed
+public class Fptr {
+    private static final Targets targets = new Targets();
+
+    private final Object instance;
+    private final MethodHandle target;
+
+    public Fptr(Object instance, String methodName) {
+        this.instance = instance;
+        this.target = instance == null ? null : targets.get(instance.getClass()).get(methodName);
+    }
+
+    public Object invoke0() {
+        if (target == null)
+            return missingTarget();
+        try {
+            return (Object) target.invokeExact(instance);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    public Object invoke1(Object a0) {
+        if (target == null)
+            return missingTarget();
+        try {
+            return (Object) target.invokeExact(instance, a0);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    public Object invoke2(Object a0, Object a1) {
+        if (target == null)
+            return missingTarget();
+        try {
+            return (Object) target.invokeExact(instance, a0, a1);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    public Object invoke3(Object a0, Object a1, Object a2) {
+        if (target == null)
+            return missingTarget();
+        try {
+            return (Object) target.invokeExact(instance, a0, a1, a2);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    public Object invoke4(Object a0, Object a1, Object a2, Object a3) {
+        if (target == null)
+            return missingTarget();
+        try {
+            return (Object) target.invokeExact(instance, a0, a1, a2, a3);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    public Object invoke(Object[] args) {
+        if (target == null)
+            return missingTarget();
+        Object[] arguments = new Object[args.length + 1];
+        arguments[0] = instance;
+        System.arraycopy(args, 0, arguments, 1, args.length);
+        try {
+            return target.invokeWithArguments(arguments);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    Object getInstance() {
+        return instance;
+    }
+
+    //shared by every pointer to the same method of the same class, null if there is no such method
+    MethodHandle getTarget() {
+        return target;
+    }
+
+    //a pointer into null fails when it is called, one to a method the class lacks returns null
+    private Object missingTarget() {
+        if (instance == null)
+            throw new NullPointerException();
+        return null;
+    }
+
+    private static RuntimeException propagate(Throwable e) {
+        if (e instanceof Error)
+            throw (Error) e;
+        if (e instanceof RuntimeException)
+            return (RuntimeException) e;
+        return new RuntimeException(e);
+    }
+
+    //method handles of the public methods a class declares or inherits from other sophia classes, by
+    //name since sophia has no overloading. each handle takes and returns Objects so invokeExact fits it
+    private static class Targets extends ClassValue<Map<String, MethodHandle>> {
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            Map<String, MethodHandle> handles = new HashMap<>();
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            for (Method method : type.getMethods()) {
+                if (method.getDeclaringClass() == Object.class || Modifier.isStatic(method.getModifiers()))
+                    continue;
+                try {
+                    MethodHandle handle = lookup.unreflect(method);
+                    handles.putIfAbsent(method.getName(),
+                            handle.asType(MethodType.genericMethodType(method.getParameterCount() + 1)));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return handles;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package runtime;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+
+//an invokedynamic call through a function pointer: (Fptr, Object...)Object. the site caches the methods
+//it has called, each behind a guard on the pointer's target, so the jit can inline a monomorphic or
+//polymorphic call; after MAX_DEPTH different methods it calls every pointer through Fptr
+public class FptrCallSite extends MutableCallSite {
+    private static final int MAX_DEPTH = 4;
+    private static final MethodHandle MISS;
+    private static final MethodHandle HAS_TARGET;
+    private static final MethodHandle INSTANCE;
+    private static final MethodHandle INVOKE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MISS = lookup.findVirtual(FptrCallSite.class, "miss",
+                    MethodType.methodType(Object.class, Fptr.class, Object[].class));
+            HAS_TARGET = lookup.findStatic(FptrCallSite.class, "hasTarget",
+                    MethodType.methodType(boolean.class, Fptr.class, MethodHandle.class));
+            INSTANCE = lookup.findVirtual(Fptr.class, "getInstance", MethodType.methodType(Object.class));
+            INVOKE = lookup.findVirtual(Fptr.class, "invoke", MethodType.methodType(Object.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private int depth;
+
+    public FptrCallSite(MethodType type) {
+        super(type);
+        setTarget(MISS.bindTo(this).asCollector(Object[].class, type.parameterCount() - 1).asType(type));
+    }
+
+    public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type) {
+        return new FptrCallSite(type);
+    }
+
+    private static boolean hasTarget(Fptr fptr, MethodHandle target) {
+        return fptr.getTarget() == target;
+    }
+
+    //pointers without a target are not cached, Fptr reports them
+    private Object miss(Fptr fptr, Object[] args) throws Throwable {
+        MethodHandle target = fptr.getTarget();
+        if (target != null) {
+            if (depth < MAX_DEPTH) {
+                depth++;
+                MethodHandle test = MethodHandles.insertArguments(HAS_TARGET, 1, target);
+                MethodHandle call = MethodHandles.filterArguments(target, 0, INSTANCE).asType(type());
+                setTarget(MethodHandles.guardWithTest(test, call, getTarget()));
+            }
+            else
+                setTarget(INVOKE.asCollector(Object[].class, type().parameterCount() - 1).asType(type()));
+        }
+        return fptr.invoke(args);
+    }
+}
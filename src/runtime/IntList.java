@@ -0,0 +1,45 @@
+package runtime;
+
+//a list whose elements are all ints
+public final class IntList extends SophiaList {
+    private int[] elements;
+    //another list may hold the same array, the first write copies it
+    private boolean shared;
+
+    public IntList(int size) {
+        this.elements = new int[size];
+    }
+
+    private IntList(int[] elements) {
+        this.elements = elements;
+        this.shared = true;
+    }
+
+    public int get(int index) {
+        return elements[index];
+    }
+
+    public void set(int index, int value) {
+        if (shared) {
+            elements = elements.clone();
+            shared = false;
+        }
+        elements[index] = value;
+    }
+
+    //the array itself, for loops over the list. it is no longer shared, so writes through this list
+    //land in it
+    public int[] elements() {
+        if (shared) {
+            elements = elements.clone();
+            shared = false;
+        }
+        return elements;
+    }
+
+    @Override
+    public SophiaList copy() {
+        shared = true;
+        return new IntList(elements);
+    }
+}
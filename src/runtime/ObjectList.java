@@ -0,0 +1,57 @@
+package runtime;
+
+//a list without int or bool elements: strings, objects, function pointers and lists
+public final class ObjectList extends SophiaList {
+    private Object[] elements;
+    //another list may hold the same array, the first write copies it
+    private boolean shared;
+
+    public ObjectList(int size) {
+        this.elements = new Object[size];
+    }
+
+    private ObjectList(Object[] elements) {
+        this.elements = elements;
+        this.shared = true;
+    }
+
+    //a nested list can be changed through the reference returned, so the array is copied first
+    public Object get(int index) {
+        Object element = elements[index];
+        if (shared && element instanceof SophiaList) {
+            own();
+            element = elements[index];
+        }
+        return element;
+    }
+
+    public void set(int index, Object value) {
+        if (shared)
+            own();
+        elements[index] = value;
+    }
+
+    //the array itself, for loops over the list. it is no longer shared, so writes through this list
+    //land in it and its nested lists are its own
+    public Object[] elements() {
+        if (shared)
+            own();
+        return elements;
+    }
+
+    @Override
+    public SophiaList copy() {
+        shared = true;
+        return new ObjectList(elements);
+    }
+
+    //nested lists are values too, the copied array gets copies of them that share their own elements
+    private void own() {
+        Object[] owned = elements.clone();
+        for (int i = 0; i < owned.length; i++)
+            if (owned[i] instanceof SophiaList)
+                owned[i] = ((SophiaList) owned[i]).copy();
+        elements = owned;
+        shared = false;
+    }
+}
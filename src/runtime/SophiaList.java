@@ -0,0 +1,7 @@
+package runtime;
+
+//base of every list representation. sophia lists are values: assigning one assigns a copy, which
+//the array backed lists make lazily by sharing their elements until one of the lists is changed
+public abstract class SophiaList {
+    public abstract SophiaList copy();
+}